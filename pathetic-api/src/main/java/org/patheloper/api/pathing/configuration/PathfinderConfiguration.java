@@ -1,6 +1,7 @@
 package org.patheloper.api.pathing.configuration;
 
 import java.util.List;
+import javax.annotation.Nullable;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Getter;
@@ -9,6 +10,8 @@ import lombok.Value;
 import lombok.With;
 import org.patheloper.api.annotation.Experimental;
 import org.patheloper.api.pathing.Pathfinder;
+import org.patheloper.api.pathing.cost.PathCostProvider;
+import org.patheloper.api.pathing.heuristic.Heuristic;
 import org.patheloper.api.wrapper.PathPosition;
 
 /**
@@ -73,6 +76,111 @@ public class PathfinderConfiguration {
    */
   boolean loadingChunks;
 
+  /**
+   * Reads chunks which are not loaded straight from the region files of the world, instead of
+   * having the server load them. This makes searches through unloaded areas a lot cheaper, but only
+   * sees what the server has saved so far. Chunks which have never been saved are only loaded if
+   * {@link #loadingChunks} is enabled as well.
+   *
+   * <p>Blocks read from region files carry no {@link org.bukkit.block.BlockState}.
+   *
+   * @experimental This feature is experimental and may be subject to change.
+   */
+  @Experimental boolean readingRegionFiles;
+
+  /**
+   * Keeps the block types of visited chunks in a persistent cache in the data folder of the
+   * plugin, so that searches are fast right after a restart instead of having to capture every
+   * chunk again. Cached chunks are dropped as soon as they change or have been saved again.
+   *
+   * <p>Blocks read from the cache carry no {@link org.bukkit.block.BlockState}.
+   *
+   * @experimental This feature is experimental and may be subject to change.
+   */
+  @Experimental boolean usingNavigationCache;
+
+  /**
+   * Defers the validation of nodes, running the filters, filter stages and diagonal checks, from
+   * the moment they are discovered to the moment they are taken from the queue. Most discovered
+   * nodes are never taken from the queue, so expensive filters run a lot less often, at the cost
+   * of a larger queue.
+   *
+   * @experimental This feature is experimental and may be subject to change.
+   */
+  @Experimental boolean validatingLazily;
+
+  /**
+   * Decides which blocks a search may move to from the block it is at.
+   *
+   * @default SearchMode.VOXEL
+   */
+  @Builder.Default SearchMode searchMode = SearchMode.VOXEL;
+
+  /**
+   * The highest step, in blocks, a path may climb from one block to the next in {@link
+   * SearchMode#SURFACE} mode.
+   *
+   * @default 1
+   */
+  @Builder.Default int maxStepUp = 1;
+
+  /**
+   * The deepest drop, in blocks, a path may fall from one block to the next in {@link
+   * SearchMode#SURFACE} mode.
+   *
+   * @default 3
+   */
+  @Builder.Default int maxDrop = 3;
+
+  /**
+   * The widest gap, in blocks, a path may jump over in a straight line in {@link
+   * SearchMode#SURFACE} mode. Gaps are only jumped where there is no ground within reach of
+   * {@link #maxDrop}. A value of 0 disables jumping over gaps.
+   *
+   * @default 0
+   */
+  int maxJumpGap;
+
+  /**
+   * The width of the entity the path is searched for, in blocks. Every position of the path leaves
+   * room for an entity this wide, centered on the block. Even widths are rounded up to the next
+   * odd width, and widths beyond 5 are treated as 5.
+   *
+   * @default 1
+   */
+  @Builder.Default int entityWidth = 1;
+
+  /**
+   * The height of the entity the path is searched for, in blocks. Every position of the path
+   * leaves this many passable blocks from the block of the position upwards. Heights beyond 16
+   * are treated as 16.
+   *
+   * <p>An entity of 1x1 blocks is not checked at all, passability is then left to the filters.
+   *
+   * @default 1
+   */
+  @Builder.Default int entityHeight = 1;
+
+  /**
+   * The amount of found paths the pathfinder keeps to answer repeated requests with, instead of
+   * searching again. A cached path is dropped as soon as any chunk it leads through changes. Only
+   * searches whose filters all share their verdicts, see {@link
+   * org.patheloper.api.pathing.filter.PathFilter#getSharedVerdictKey()}, and which have no {@link
+   * #costProvider} are cached. A value of 0 disables the cache.
+   *
+   * @experimental This feature is experimental and may be subject to change.
+   */
+  @Experimental int resultCacheSize;
+
+  /**
+   * How far, in blocks on every axis, the start and target of a request may be from those of a
+   * cached path for that path to still be reused. The gaps are bridged by short searches around
+   * the ends of the path. A value of 0 only reuses paths between exactly the same blocks.
+   *
+   * @default 4
+   */
+  @Builder.Default int resultReuseDistance = 4;
+
   /**
    * If pathfinding fails, determines whether to run a reverse pathfinding check (from target to
    * start) to verify the result. This is a computationally expensive fallback but can help identify
@@ -105,6 +213,30 @@ public class PathfinderConfiguration {
    */
   @Builder.Default HeuristicWeights heuristicWeights = HeuristicWeights.NATURAL_PATH_WEIGHTS;
 
+  /**
+   * The heuristic estimating the remaining cost to the target. If none is set, a {@link
+   * Heuristic#weighted weighted} heuristic using the {@link #heuristicWeights} is used.
+   *
+   * @default null
+   */
+  @Nullable Heuristic heuristic;
+
+  /**
+   * Weighs the blocks a path leads through, so that cheap blocks are preferred over expensive
+   * ones. If set, the search orders its nodes by the accumulated cost plus the heuristic, like a
+   * plain A*, instead of by the heuristic alone.
+   *
+   * @default null
+   */
+  @Nullable PathCostProvider costProvider;
+
+  /**
+   * @return the configured {@link #heuristic}, or the weighted one if none is set
+   */
+  public Heuristic getEffectiveHeuristic() {
+    return heuristic != null ? heuristic : Heuristic.weighted(heuristicWeights);
+  }
+
   /**
    * @return A new {@link PathfinderConfiguration} with default parameters but async.
    */
@@ -138,8 +270,22 @@ public class PathfinderConfiguration {
         .allowingFailFast(pathfinderConfiguration.allowingFailFast)
         .allowingFallback(pathfinderConfiguration.allowingFallback)
         .loadingChunks(pathfinderConfiguration.loadingChunks)
+        .readingRegionFiles(pathfinderConfiguration.readingRegionFiles)
+        .usingNavigationCache(pathfinderConfiguration.usingNavigationCache)
+        .validatingLazily(pathfinderConfiguration.validatingLazily)
+        .searchMode(pathfinderConfiguration.searchMode)
+        .maxStepUp(pathfinderConfiguration.maxStepUp)
+        .maxDrop(pathfinderConfiguration.maxDrop)
+        .maxJumpGap(pathfinderConfiguration.maxJumpGap)
+        .entityWidth(pathfinderConfiguration.entityWidth)
+        .entityHeight(pathfinderConfiguration.entityHeight)
+        .resultCacheSize(pathfinderConfiguration.resultCacheSize)
+        .resultReuseDistance(pathfinderConfiguration.resultReuseDistance)
         .counterCheck(pathfinderConfiguration.counterCheck)
+        .prioritizing(pathfinderConfiguration.prioritizing)
         .heuristicWeights(pathfinderConfiguration.heuristicWeights)
+        .heuristic(pathfinderConfiguration.heuristic)
+        .costProvider(pathfinderConfiguration.costProvider)
         .build();
   }
 }
@@ -0,0 +1,42 @@
+package org.patheloper.api.pathing.configuration;
+
+/** Decides which blocks a search may move to from the block it is at. */
+public enum SearchMode {
+
+  /**
+   * Moves to any of the neighbouring blocks, or only to the straight ones if diagonal movement is
+   * not allowed. Which blocks may be walked through is left to the filters. Suits entities which
+   * fly or swim.
+   */
+  VOXEL,
+  /**
+   * Only moves between blocks an entity can stand in, with a solid block below and enough
+   * passable blocks above. From each block the search moves to the standing block of every
+   * neighbouring column, climbing at most {@link PathfinderConfiguration#getMaxStepUp()} blocks
+   * and dropping at most {@link PathfinderConfiguration#getMaxDrop()} blocks, and may jump over
+   * gaps of up to {@link PathfinderConfiguration#getMaxJumpGap()} blocks. Paths are walkable
+   * without any filter checking for ground, and far fewer blocks are searched than in {@link
+   * #VOXEL} mode.
+   *
+   * <p>The start and target are the blocks the feet of the entity are in.
+   */
+  SURFACE,
+  /**
+   * Routes over a navigation mesh instead of searching blocks. The walkable blocks of each chunk
+   * section are merged into rectangular regions, which are linked where an entity can walk from
+   * one to the other on the same layer, step up or drop down, within the same {@link
+   * PathfinderConfiguration#getMaxStepUp() step} and {@link PathfinderConfiguration#getMaxDrop()
+   * drop} limits as in {@link #SURFACE} mode. A route is searched over the regions and then
+   * straightened, so the path only holds the waypoints at which it turns and has to be {@link
+   * org.patheloper.api.pathing.result.Path#interpolate interpolated} to get every block along it.
+   * Far fewer nodes are searched than in {@link #SURFACE} mode, so long paths are found much
+   * faster. The mesh of a section is built once and only rebuilt after its chunk has changed.
+   *
+   * <p>Requests with filters or a {@link PathfinderConfiguration#getCostProvider() cost provider},
+   * and requests for entities wider than a block, are searched in {@link #SURFACE} mode, as are
+   * requests the mesh has no route for, e.g. because the path takes a jump, or whose route is
+   * longer than the {@link PathfinderConfiguration#getMaxLength() length limit}. The {@link
+   * PathfinderConfiguration#getMaxIterations() iteration limit} caps the regions searched.
+   */
+  NAVMESH
+}
@@ -0,0 +1,61 @@
+package org.patheloper.api.pathing.cost;
+
+import java.util.Arrays;
+import lombok.NonNull;
+import org.bukkit.Material;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathEnvironment;
+
+/**
+ * A {@link PathCostProvider} weighing blocks by their material, looked up from an array indexed
+ * by the ordinal of the material. Blocks which are not available are {@link #IMPASSABLE}.
+ *
+ * <pre>{@code
+ * PathCostProvider costs =
+ *     new MaterialPathCostProvider()
+ *         .withCost(Material.DIRT_PATH, 0.5)
+ *         .withCost(Material.WATER, 5)
+ *         .withCost(Material.LAVA, PathCostProvider.IMPASSABLE);
+ * }</pre>
+ */
+public final class MaterialPathCostProvider implements PathCostProvider {
+
+  private final double[] costs;
+
+  /** Creates a provider giving all materials the {@link #DEFAULT_COST}. */
+  public MaterialPathCostProvider() {
+    this(DEFAULT_COST);
+  }
+
+  /** Creates a provider giving all materials the given cost. */
+  public MaterialPathCostProvider(double defaultCost) {
+    this.costs = new double[Material.values().length];
+    Arrays.fill(costs, defaultCost);
+  }
+
+  private MaterialPathCostProvider(double[] costs) {
+    this.costs = costs;
+  }
+
+  /**
+   * @return a copy of this provider with the given cost for the material
+   */
+  public MaterialPathCostProvider withCost(@NonNull Material material, double cost) {
+    if (!(cost >= 0)) throw new IllegalArgumentException("Cost must be at least 0: " + cost);
+
+    double[] copy = costs.clone();
+    copy[material.ordinal()] = cost;
+    return new MaterialPathCostProvider(copy);
+  }
+
+  @Override
+  public double getCost(
+      int x,
+      int y,
+      int z,
+      @NonNull PathEnvironment environment,
+      @NonNull SnapshotManager snapshotManager) {
+    Material material = snapshotManager.getMaterial(environment, x, y, z);
+    return material == null ? IMPASSABLE : costs[material.ordinal()];
+  }
+}
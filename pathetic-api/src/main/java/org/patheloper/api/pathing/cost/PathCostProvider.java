@@ -0,0 +1,40 @@
+package org.patheloper.api.pathing.cost;
+
+import lombok.NonNull;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathEnvironment;
+
+/**
+ * A PathCostProvider weighs the blocks a path may lead through, so that the pathfinder prefers
+ * cheap blocks over expensive ones instead of merely accepting or rejecting them like a {@link
+ * org.patheloper.api.pathing.filter.PathFilter}. Roads could be cheap, water expensive and lava
+ * {@link #IMPASSABLE}.
+ *
+ * <p>The cost of a move is its length multiplied by the cost of the block it moves into, and adds
+ * up along the path. Since the cost only depends on the block, the pathfinder asks for each block
+ * at most once per search and keeps the costs per chunk section.
+ *
+ * <p>Costs below 1 make the remaining distance to the target look more expensive than it is, which
+ * may make the search miss the cheapest path.
+ */
+@FunctionalInterface
+public interface PathCostProvider {
+
+  /** The cost of a block which must not be entered at all. */
+  double IMPASSABLE = Double.POSITIVE_INFINITY;
+
+  /** The cost of a block which is neither preferred nor avoided. */
+  double DEFAULT_COST = 1.0;
+
+  /**
+   * Weighs the block at the given coordinates.
+   *
+   * @return the cost per block of moving into the block, at least 0, or {@link #IMPASSABLE}
+   */
+  double getCost(
+      int x,
+      int y,
+      int z,
+      @NonNull PathEnvironment environment,
+      @NonNull SnapshotManager snapshotManager);
+}
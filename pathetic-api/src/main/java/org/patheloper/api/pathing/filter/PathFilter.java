@@ -1,7 +1,11 @@
 package org.patheloper.api.pathing.filter;
 
+import javax.annotation.Nullable;
 import lombok.NonNull;
 import org.patheloper.api.pathing.Pathfinder;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathEnvironment;
+import org.patheloper.api.wrapper.PathPosition;
 
 import java.util.List;
 
@@ -27,6 +31,80 @@ public interface PathFilter {
    */
   boolean filter(@NonNull PathValidationContext pathValidationContext);
 
+  /**
+   * Evaluates the block at the given coordinates, without the pathfinder having to allocate a
+   * {@link PathValidationContext} and positions for every call. The pathfinder prefers this method
+   * over {@link #filter(PathValidationContext)}.
+   *
+   * <p>The default implementation adapts the call to {@link #filter(PathValidationContext)}, so
+   * existing filters keep working. Filters which only look at blocks should override it and read
+   * them through the coordinate based methods of the {@link SnapshotManager}.
+   *
+   * @param parentX the x-coordinate of the block the position is reached from, the parent
+   *     coordinates equal the position if there is no parent
+   * @param environment the environment the coordinates are in
+   * @return true if the path is valid, false otherwise
+   */
+  default boolean filter(
+      int x,
+      int y,
+      int z,
+      int parentX,
+      int parentY,
+      int parentZ,
+      @NonNull PathEnvironment environment,
+      @NonNull SnapshotManager snapshotManager) {
+    boolean hasParent = x != parentX || y != parentY || z != parentZ;
+    return filter(
+        new PathValidationContext(
+            new PathPosition(environment, x, y, z),
+            hasParent ? new PathPosition(environment, parentX, parentY, parentZ) : null,
+            snapshotManager));
+  }
+
+  /**
+   * Declares whether the verdict of this filter only depends on the position, not on the parent it
+   * is reached from or on anything that changes during a search. The pathfinder remembers the
+   * verdicts of deterministic filters per position and doesn't ask them again for the same position
+   * within a search.
+   *
+   * @return true if the filter is deterministic, by default only if it {@link
+   *     #getSharedVerdictKey() shares its verdicts}
+   */
+  default boolean isDeterministic() {
+    return getSharedVerdictKey() != null;
+  }
+
+  /**
+   * Declares that the verdict of this filter only depends on the blocks of the world, so that it
+   * can be shared between searches. The pathfinder keeps the verdicts of such filters per chunk
+   * section until a block in that chunk changes, and later searches read them instead of asking
+   * the filter again.
+   *
+   * <p>Filters returning equal keys share their verdicts, so the key has to capture everything the
+   * verdict depends on besides the blocks, e.g. the class of a stateless filter, or the filter
+   * itself if it implements equals over its configuration.
+   *
+   * @return the key to share verdicts under, or null if they must not be shared, which is the
+   *     default
+   */
+  @Nullable
+  default Object getSharedVerdictKey() {
+    return null;
+  }
+
+  /**
+   * Estimates how expensive a single evaluation of this filter is, relative to reading a single
+   * block, which costs about 1. The pathfinder measures the actual cost and rejection rate of each
+   * filter while it searches and runs cheap, selective filters first. The hint only decides the
+   * order until enough has been measured.
+   *
+   * @return the estimated relative cost, 1 by default
+   */
+  default double getCostHint() {
+    return 1.0;
+  }
+
   /**
    * Cleans up the resources used during the pathfinding process. This method is guaranteed to
    * always be called after pathfinding and should be overridden to ensure proper disposal of
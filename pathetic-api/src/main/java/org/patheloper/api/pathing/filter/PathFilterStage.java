@@ -1,15 +1,23 @@
 package org.patheloper.api.pathing.filter;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import javax.annotation.Nullable;
 import lombok.Value;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathEnvironment;
 
-/** A stage for multiple PathFilters. */
+/**
+ * A stage for multiple PathFilters. The filters keep the order they were given in, though the
+ * pathfinder may evaluate them in another order, see {@link PathFilter#getCostHint()}.
+ */
 @Value
 public class PathFilterStage {
 
-  Set<PathFilter> filters = new HashSet<>();
+  Set<PathFilter> filters = new LinkedHashSet<>();
 
   public PathFilterStage(PathFilter... pathFilter) {
     filters.addAll(Arrays.asList(pathFilter));
@@ -22,7 +30,60 @@ public class PathFilterStage {
    * @return true if the context passes all filters, false otherwise.
    */
   public boolean filter(PathValidationContext context) {
-    return filters.stream().allMatch(filter -> filter.filter(context));
+    for (PathFilter filter : filters) {
+      if (!filter.filter(context)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Filters the block at the given coordinates with all filters in the stage.
+   *
+   * @return true if the block passes all filters, false otherwise.
+   * @see PathFilter#filter(int, int, int, int, int, int, PathEnvironment, SnapshotManager)
+   */
+  public boolean filter(
+      int x,
+      int y,
+      int z,
+      int parentX,
+      int parentY,
+      int parentZ,
+      PathEnvironment environment,
+      SnapshotManager snapshotManager) {
+    for (PathFilter filter : filters) {
+      if (!filter.filter(x, y, z, parentX, parentY, parentZ, environment, snapshotManager))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * @return whether all filters of the stage are deterministic, which makes the stage deterministic
+   *     as a whole
+   * @see PathFilter#isDeterministic()
+   */
+  public boolean isDeterministic() {
+    for (PathFilter filter : filters) {
+      if (!filter.isDeterministic()) return false;
+    }
+    return true;
+  }
+
+  /**
+   * @return the key to share the verdicts of the stage under, made up of the keys of its filters,
+   *     or null if any of its filters doesn't share its verdicts
+   * @see PathFilter#getSharedVerdictKey()
+   */
+  @Nullable
+  public Object getSharedVerdictKey() {
+    List<Object> keys = new ArrayList<>(filters.size());
+    for (PathFilter filter : filters) {
+      Object key = filter.getSharedVerdictKey();
+      if (key == null) return null;
+      keys.add(key);
+    }
+    return keys;
   }
 
   /** Cleans up all filters in the stage. */
@@ -0,0 +1,29 @@
+package org.patheloper.api.pathing.filter.filters;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Finds out whether a subclass of a built-in filter overrides one of the methods the built-in
+ * filter doesn't call on its fast path anymore, so that the filter can still call it for them.
+ */
+@UtilityClass
+class FilterOverrides {
+
+  /**
+   * @param type the class of the filter
+   * @param builtInType the built-in filter declaring the method
+   * @return whether a class between the two declares the method
+   */
+  boolean isOverridden(
+      Class<?> type, Class<?> builtInType, String name, Class<?>... parameterTypes) {
+    for (Class<?> current = type; current != builtInType; current = current.getSuperclass()) {
+      try {
+        current.getDeclaredMethod(name, parameterTypes);
+        return true;
+      } catch (NoSuchMethodException e) {
+        // not declared on this level
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,69 @@
+package org.patheloper.api.pathing.filter.filters;
+
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import org.patheloper.api.pathing.filter.PathFilter;
+import org.patheloper.api.pathing.filter.PathValidationContext;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.util.MaterialMask;
+import org.patheloper.api.wrapper.PathEnvironment;
+import org.patheloper.api.wrapper.PathPosition;
+
+/**
+ * A PathFilter implementation that determines if a path is through one of the materials of a
+ * {@link MaterialMask}, for example {@code new MaterialPathFilter(MaterialMask.of(Material.WATER,
+ * Material.LAVA))}.
+ */
+@EqualsAndHashCode
+public class MaterialPathFilter implements PathFilter {
+
+  private final MaterialMask materials;
+
+  /** Whether a subclass overrides {@link #filter(PathValidationContext)}, see {@link #filter}. */
+  private final boolean contextFilterOverridden =
+      FilterOverrides.isOverridden(
+          getClass(), MaterialPathFilter.class, "filter", PathValidationContext.class);
+
+  public MaterialPathFilter(@NonNull MaterialMask materials) {
+    this.materials = materials;
+  }
+
+  @Override
+  public boolean filter(@NonNull PathValidationContext pathValidationContext) {
+    PathPosition position = pathValidationContext.getPosition();
+    return test(
+        position.getPathEnvironment(),
+        position.getBlockX(),
+        position.getBlockY(),
+        position.getBlockZ(),
+        pathValidationContext.getSnapshotManager());
+  }
+
+  @Override
+  public boolean filter(
+      int x,
+      int y,
+      int z,
+      int parentX,
+      int parentY,
+      int parentZ,
+      @NonNull PathEnvironment environment,
+      @NonNull SnapshotManager snapshotManager) {
+    // subclasses written against the context based method keep having it called
+    if (contextFilterOverridden)
+      return PathFilter.super.filter(
+          x, y, z, parentX, parentY, parentZ, environment, snapshotManager);
+
+    return test(environment, x, y, z, snapshotManager);
+  }
+
+  private boolean test(
+      PathEnvironment environment, int x, int y, int z, SnapshotManager snapshotManager) {
+    return materials.contains(snapshotManager.getMaterial(environment, x, y, z));
+  }
+
+  @Override
+  public Object getSharedVerdictKey() {
+    return this;
+  }
+}
@@ -3,7 +3,11 @@ package org.patheloper.api.pathing.filter.filters;
 import lombok.NonNull;
 import org.patheloper.api.pathing.filter.PathValidationContext;
 import org.patheloper.api.pathing.filter.PathFilter;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.util.MaterialMask;
 import org.patheloper.api.wrapper.PathBlock;
+import org.patheloper.api.wrapper.PathEnvironment;
+import org.patheloper.api.wrapper.PathPosition;
 
 /**
  * A PathFilter implementation that determines if a path is passable.
@@ -12,12 +16,47 @@ import org.patheloper.api.wrapper.PathBlock;
  */
 public class PassablePathFilter implements PathFilter {
 
+  /** Whether a subclass overrides {@link #filter(PathValidationContext)}, see {@link #filter}. */
+  private final boolean contextFilterOverridden =
+      FilterOverrides.isOverridden(
+          getClass(), PassablePathFilter.class, "filter", PathValidationContext.class);
+
   @Override
   public boolean filter(@NonNull PathValidationContext pathValidationContext) {
-    return pathValidationContext
-        .getSnapshotManager()
-        .getBlock(pathValidationContext.getPosition())
-        .isPassable();
+    PathPosition position = pathValidationContext.getPosition();
+    return test(
+        position.getPathEnvironment(),
+        position.getBlockX(),
+        position.getBlockY(),
+        position.getBlockZ(),
+        pathValidationContext.getSnapshotManager());
+  }
+
+  @Override
+  public boolean filter(
+      int x,
+      int y,
+      int z,
+      int parentX,
+      int parentY,
+      int parentZ,
+      @NonNull PathEnvironment environment,
+      @NonNull SnapshotManager snapshotManager) {
+    // subclasses written against the context based method keep having it called
+    if (contextFilterOverridden)
+      return PathFilter.super.filter(
+          x, y, z, parentX, parentY, parentZ, environment, snapshotManager);
+
+    return test(environment, x, y, z, snapshotManager);
   }
 
+  private boolean test(
+      PathEnvironment environment, int x, int y, int z, SnapshotManager snapshotManager) {
+    return MaterialMask.PASSABLE.contains(snapshotManager.getMaterial(environment, x, y, z));
+  }
+
+  @Override
+  public Object getSharedVerdictKey() {
+    return getClass();
+  }
 }
@@ -3,7 +3,10 @@ package org.patheloper.api.pathing.filter.filters;
 import org.patheloper.api.pathing.filter.PathFilter;
 import org.patheloper.api.pathing.filter.PathValidationContext;
 import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.util.MaterialMask;
 import org.patheloper.api.wrapper.PathBlock;
+import org.patheloper.api.wrapper.PathEnvironment;
+import org.patheloper.api.wrapper.PathPosition;
 
 import lombok.NonNull;
 
@@ -12,15 +15,71 @@ import lombok.NonNull;
  */
 public class SolidGroundPathFilter implements PathFilter {
 
+  /**
+   * Whether a subclass overrides {@link #filter(PathValidationContext)} or the deprecated {@link
+   * #hasGround(PathBlock, SnapshotManager)}, see {@link #filter}.
+   */
+  private final boolean contextFilterOverridden =
+      FilterOverrides.isOverridden(
+              getClass(), SolidGroundPathFilter.class, "filter", PathValidationContext.class)
+          || FilterOverrides.isOverridden(
+              getClass(),
+              SolidGroundPathFilter.class,
+              "hasGround",
+              PathBlock.class,
+              SnapshotManager.class);
+
   @Override
   public boolean filter(@NonNull PathValidationContext pathValidationContext) {
     SnapshotManager snapshotManager = pathValidationContext.getSnapshotManager();
     PathBlock block = snapshotManager.getBlock(pathValidationContext.getPosition());
-    return hasGround(block, snapshotManager);
+    return block != null && hasGround(block, snapshotManager);
+  }
+
+  @Override
+  public boolean filter(
+      int x,
+      int y,
+      int z,
+      int parentX,
+      int parentY,
+      int parentZ,
+      @NonNull PathEnvironment environment,
+      @NonNull SnapshotManager snapshotManager) {
+    // subclasses written against the context based method keep having it called
+    if (contextFilterOverridden)
+      return PathFilter.super.filter(
+          x, y, z, parentX, parentY, parentZ, environment, snapshotManager);
+
+    return hasGround(environment, x, y, z, snapshotManager);
   }
 
+  /**
+   * Called by {@link #filter(PathValidationContext)}. Subclasses overriding it are still asked, but
+   * take the slower path through the context based method.
+   *
+   * @deprecated Override {@link #hasGround(PathEnvironment, int, int, int, SnapshotManager)}
+   *     instead, which the coordinate based {@link #filter} uses.
+   */
+  @Deprecated
   protected boolean hasGround(PathBlock block, SnapshotManager snapshotManager) {
-    PathBlock below = snapshotManager.getBlock(block.getPathPosition().add(0, -1, 0));
-    return below.isSolid();
+    PathPosition position = block.getPathPosition();
+    return hasGround(
+        position.getPathEnvironment(),
+        position.getBlockX(),
+        position.getBlockY(),
+        position.getBlockZ(),
+        snapshotManager);
+  }
+
+  /** Checks whether the block below the given coordinates is solid. */
+  protected boolean hasGround(
+      PathEnvironment environment, int x, int y, int z, SnapshotManager snapshotManager) {
+    return MaterialMask.SOLID.contains(snapshotManager.getMaterial(environment, x, y - 1, z));
+  }
+
+  @Override
+  public Object getSharedVerdictKey() {
+    return getClass();
   }
 }
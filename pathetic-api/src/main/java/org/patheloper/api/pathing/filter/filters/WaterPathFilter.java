@@ -5,16 +5,53 @@ import org.bukkit.Material;
 import org.patheloper.api.pathing.filter.PathValidationContext;
 import org.patheloper.api.pathing.filter.PathFilter;
 import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathEnvironment;
 import org.patheloper.api.wrapper.PathPosition;
 
 /** A PathFilter implementation that determines if a path is through water. */
 public class WaterPathFilter implements PathFilter {
 
+  /** Whether a subclass overrides {@link #filter(PathValidationContext)}, see {@link #filter}. */
+  private final boolean contextFilterOverridden =
+      FilterOverrides.isOverridden(
+          getClass(), WaterPathFilter.class, "filter", PathValidationContext.class);
+
   @Override
   public boolean filter(@NonNull PathValidationContext pathValidationContext) {
-    SnapshotManager snapshotManager = pathValidationContext.getSnapshotManager();
-    PathPosition pathPosition = pathValidationContext.getPosition();
+    PathPosition position = pathValidationContext.getPosition();
+    return test(
+        position.getPathEnvironment(),
+        position.getBlockX(),
+        position.getBlockY(),
+        position.getBlockZ(),
+        pathValidationContext.getSnapshotManager());
+  }
 
-    return snapshotManager.getBlock(pathPosition).getBlockInformation().getMaterial().equals(Material.WATER);
+  @Override
+  public boolean filter(
+      int x,
+      int y,
+      int z,
+      int parentX,
+      int parentY,
+      int parentZ,
+      @NonNull PathEnvironment environment,
+      @NonNull SnapshotManager snapshotManager) {
+    // subclasses written against the context based method keep having it called
+    if (contextFilterOverridden)
+      return PathFilter.super.filter(
+          x, y, z, parentX, parentY, parentZ, environment, snapshotManager);
+
+    return test(environment, x, y, z, snapshotManager);
+  }
+
+  private boolean test(
+      PathEnvironment environment, int x, int y, int z, SnapshotManager snapshotManager) {
+    return snapshotManager.getMaterial(environment, x, y, z) == Material.WATER;
+  }
+
+  @Override
+  public Object getSharedVerdictKey() {
+    return getClass();
   }
 }
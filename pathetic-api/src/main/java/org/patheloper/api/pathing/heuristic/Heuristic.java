@@ -0,0 +1,47 @@
+package org.patheloper.api.pathing.heuristic;
+
+import lombok.NonNull;
+import org.patheloper.api.pathing.configuration.HeuristicWeights;
+import org.patheloper.api.wrapper.PathPosition;
+
+/**
+ * A Heuristic estimates the remaining cost from a block to the target of a search, which guides
+ * the A* algorithm towards the target. It is prepared once per search, so that everything which
+ * only depends on the start and target is computed up front, and the {@link Estimator} it returns
+ * is then asked for every node on plain block coordinates.
+ *
+ * <p>The pathfinder uses a {@link WeightedHeuristic} blending the {@link HeuristicWeights} of its
+ * configuration, unless another heuristic is configured.
+ */
+@FunctionalInterface
+public interface Heuristic {
+
+  /**
+   * Prepares the heuristic for a search between the given blocks.
+   *
+   * @param start the block the search starts at
+   * @param target the block the search is looking for
+   * @return the estimator used for all nodes of the search
+   */
+  Estimator prepare(@NonNull PathPosition start, @NonNull PathPosition target);
+
+  /**
+   * @return a heuristic blending the distance metrics according to the given weights
+   */
+  static Heuristic weighted(@NonNull HeuristicWeights heuristicWeights) {
+    return new WeightedHeuristic(heuristicWeights);
+  }
+
+  /**
+   * Estimates the remaining cost of a single search. Estimators are only used by the search they
+   * have been prepared for and don't need to be thread-safe.
+   */
+  @FunctionalInterface
+  interface Estimator {
+
+    /**
+     * @return the estimated cost from the block at the given coordinates to the target
+     */
+    double estimate(int x, int y, int z);
+  }
+}
@@ -0,0 +1,79 @@
+package org.patheloper.api.pathing.heuristic;
+
+import lombok.NonNull;
+import lombok.Value;
+import org.patheloper.api.pathing.configuration.HeuristicWeights;
+import org.patheloper.api.util.NumberUtils;
+import org.patheloper.api.wrapper.PathPosition;
+
+/**
+ * The default {@link Heuristic}, blending the manhattan, octile and perpendicular distance as well
+ * as the height difference to the target according to {@link HeuristicWeights}.
+ *
+ * <p>The line between start and target, which the perpendicular distance is measured against, is
+ * computed once per search, so estimating a block neither allocates nor takes more than a single
+ * square root.
+ */
+@Value
+public class WeightedHeuristic implements Heuristic {
+
+  private static final double SQRT_2 = 1.4142135623730951;
+  private static final double SQRT_3 = 1.7320508075688772;
+
+  @NonNull HeuristicWeights heuristicWeights;
+
+  @Override
+  public Estimator prepare(@NonNull PathPosition start, @NonNull PathPosition target) {
+    int startX = start.getBlockX();
+    int startY = start.getBlockY();
+    int startZ = start.getBlockZ();
+    int targetX = target.getBlockX();
+    int targetY = target.getBlockY();
+    int targetZ = target.getBlockZ();
+
+    // the unit direction from start to target, its cross product with an offset is the distance
+    double lineLength =
+        Math.sqrt(
+            NumberUtils.square(targetX - startX)
+                + NumberUtils.square(targetY - startY)
+                + NumberUtils.square(targetZ - startZ));
+    double scale = lineLength == 0 ? 0 : 1 / lineLength;
+    double lineX = (targetX - startX) * scale;
+    double lineY = (targetY - startY) * scale;
+    double lineZ = (targetZ - startZ) * scale;
+
+    double manhattanWeight = heuristicWeights.getManhattanWeight();
+    double octileWeight = heuristicWeights.getOctileWeight();
+    double perpendicularWeight = heuristicWeights.getPerpendicularWeight();
+    double heightWeight = heuristicWeights.getHeightWeight();
+
+    return (x, y, z) -> {
+      int dx = Math.abs(x - targetX);
+      int dy = Math.abs(y - targetY);
+      int dz = Math.abs(z - targetZ);
+
+      int manhattanDistance = dx + dy + dz;
+
+      int smallest = Math.min(Math.min(dx, dz), dy);
+      int highest = Math.max(Math.max(dx, dz), dy);
+      int mid = manhattanDistance - smallest - highest;
+      double octileDistance = (SQRT_3 - SQRT_2) * smallest + (SQRT_2 - 1) * mid + highest;
+
+      double offsetX = x - startX;
+      double offsetY = y - startY;
+      double offsetZ = z - startZ;
+      double perpendicularDistance =
+          Math.sqrt(
+              NumberUtils.square(offsetY * lineZ - lineY * offsetZ)
+                  + NumberUtils.square(offsetZ * lineX - lineZ * offsetX)
+                  + NumberUtils.square(offsetX * lineY - lineX * offsetY));
+
+      // Ensure the combined heuristic is consistent
+      return Math.max(
+          manhattanDistance * manhattanWeight,
+          octileDistance * octileWeight
+              + perpendicularDistance * perpendicularWeight
+              + dy * heightWeight);
+    };
+  }
+}
@@ -1,5 +1,6 @@
 package org.patheloper.api.snapshot;
 
+import java.util.concurrent.CompletableFuture;
 import org.bukkit.ChunkSnapshot;
 import org.bukkit.World;
 import org.bukkit.block.BlockState;
@@ -10,6 +11,9 @@ public interface ChunkDataProvider {
   /**
    * Returns a {@link ChunkSnapshot} of the chunk at the given coordinates.
    *
+   * @api.Note The snapshot is only guaranteed to contain block data. Heightmaps and biomes might be
+   *     left out to keep the capture cheap.
+   *
    * @param world The {@link World} to get the {@link ChunkSnapshot} from
    * @param chunkX The x-coordinate of the chunk
    * @param chunkZ The z-coordinate of the chunk
@@ -17,6 +21,24 @@ public interface ChunkDataProvider {
    */
   ChunkSnapshot getSnapshot(World world, int chunkX, int chunkZ);
 
+  /**
+   * Loads the chunk at the given coordinates asynchronously, without blocking the calling thread.
+   * No snapshot is captured, that is left to the caller once the chunk is available.
+   *
+   * <p>The default implementation loads the chunk synchronously through {@link #getSnapshot}, so
+   * existing providers keep working. Providers able to load chunks asynchronously should override
+   * it.
+   *
+   * @param world The {@link World} to load the chunk in
+   * @param chunkX The x-coordinate of the chunk
+   * @param chunkZ The z-coordinate of the chunk
+   * @return A future completed once the chunk is loaded
+   */
+  default CompletableFuture<Void> loadChunkAsync(World world, int chunkX, int chunkZ) {
+    getSnapshot(world, chunkX, chunkZ);
+    return CompletableFuture.completedFuture(null);
+  }
+
   /** Get the block state from a chunk snapshot at the given coordinates */
   BlockState getBlockState(ChunkSnapshot snapshot, int x, int y, int z);
 }
@@ -1,6 +1,10 @@
 package org.patheloper.api.snapshot;
 
+import java.util.BitSet;
+import org.bukkit.Material;
+import org.patheloper.api.util.MaterialMask;
 import org.patheloper.api.wrapper.PathBlock;
+import org.patheloper.api.wrapper.PathEnvironment;
 import org.patheloper.api.wrapper.PathPosition;
 
 /**
@@ -9,6 +13,9 @@ import org.patheloper.api.wrapper.PathPosition;
  */
 public interface SnapshotManager {
 
+  /** The amount of blocks in a 3x3x3 neighbourhood, see {@link #getNeighbourhood}. */
+  int NEIGHBOURHOOD_VOLUME = 27;
+
   /**
    * Gets the block at the given position
    *
@@ -18,4 +25,86 @@ public interface SnapshotManager {
    * @return {@link PathBlock} the block.
    */
   PathBlock getBlock(PathPosition position);
+
+  /**
+   * Gets the block at the given block coordinates.
+   *
+   * @see #getBlock(PathPosition)
+   */
+  default PathBlock getBlock(PathEnvironment environment, int x, int y, int z) {
+    return getBlock(new PathPosition(environment, x, y, z));
+  }
+
+  /**
+   * Gets the material of the block at the given block coordinates. Implementations should read it
+   * without creating a {@link PathBlock}, which also resolves the block state.
+   *
+   * @return the material, or null if the block is not available, for the same reasons {@link
+   *     #getBlock(PathPosition)} would return null
+   */
+  default Material getMaterial(PathEnvironment environment, int x, int y, int z) {
+    PathBlock block = getBlock(environment, x, y, z);
+    return block == null ? null : block.getBlockInformation().getMaterial();
+  }
+
+  /**
+   * Reads the materials of all blocks within a box into the given array. The box starts at the
+   * block of the origin and spans the given amount of blocks along each axis. The material of the
+   * block at {@code origin + (x, y, z)} is stored at index {@code (y * sizeZ + z) * sizeX + x}.
+   *
+   * <p>Implementations should resolve each chunk only once for the whole box, the default
+   * implementation falls back to {@link #getBlock(PathPosition)} for every single block.
+   *
+   * @api.Note Blocks which are not available, for the same reasons {@link #getBlock} would return
+   *     null, are stored as null.
+   * @param origin the block with the lowest coordinates of the box
+   * @param materials the array to fill, at least {@code sizeX * sizeY * sizeZ} long
+   */
+  default void getMaterials(
+      PathPosition origin, int sizeX, int sizeY, int sizeZ, Material[] materials) {
+    PathPosition blockOrigin = origin.floor();
+    for (int y = 0; y < sizeY; y++)
+      for (int z = 0; z < sizeZ; z++)
+        for (int x = 0; x < sizeX; x++) {
+          PathBlock block = getBlock(blockOrigin.add(x, y, z));
+          materials[(y * sizeZ + z) * sizeX + x] =
+              block == null ? null : block.getBlockInformation().getMaterial();
+        }
+  }
+
+  /**
+   * Marks which blocks within a box are passable, using the same layout as {@link #getMaterials}.
+   * Blocks which are not available are marked as not passable.
+   *
+   * @param origin the block with the lowest coordinates of the box
+   * @param passable the set to fill, previous contents within the box are overwritten
+   */
+  default void getPassability(
+      PathPosition origin, int sizeX, int sizeY, int sizeZ, BitSet passable) {
+    Material[] materials = new Material[sizeX * sizeY * sizeZ];
+    getMaterials(origin, sizeX, sizeY, sizeZ, materials);
+
+    for (int i = 0; i < materials.length; i++)
+      passable.set(i, MaterialMask.PASSABLE.contains(materials[i]));
+  }
+
+  /**
+   * Marks which blocks of the 3x3x3 neighbourhood around the given position are passable, the
+   * position itself included. Use {@link #getNeighbourhoodIndex} to look up a single block.
+   *
+   * @param center the block in the middle of the neighbourhood
+   * @param passable the set to fill, previous contents of the first {@link #NEIGHBOURHOOD_VOLUME}
+   *     bits are overwritten
+   */
+  default void getNeighbourhood(PathPosition center, BitSet passable) {
+    getPassability(center.floor().subtract(1, 1, 1), 3, 3, 3, passable);
+  }
+
+  /**
+   * @return the index of the block at the given offset from the center within a neighbourhood read
+   *     by {@link #getNeighbourhood}, each offset ranging from -1 to 1
+   */
+  static int getNeighbourhoodIndex(int offsetX, int offsetY, int offsetZ) {
+    return ((offsetY + 1) * 3 + offsetZ + 1) * 3 + offsetX + 1;
+  }
 }
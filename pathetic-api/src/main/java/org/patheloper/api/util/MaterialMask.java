@@ -0,0 +1,105 @@
+package org.patheloper.api.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import org.bukkit.Material;
+
+/**
+ * An immutable set of materials, compiled into a bitset indexed by the ordinal of the material.
+ * Checking whether a material is part of the mask is a single bit test, which is a lot cheaper
+ * than evaluating the predicate it was built from, like the large switch behind {@link
+ * Material#isSolid()}, for every block.
+ */
+@EqualsAndHashCode
+public final class MaterialMask {
+
+  private static final Material[] MATERIALS = Material.values();
+
+  /** All materials which are solid, see {@link Material#isSolid()}. */
+  public static final MaterialMask SOLID = of(Material::isSolid);
+
+  /** All materials which are not solid, and therefore possible to walk through. */
+  public static final MaterialMask PASSABLE = SOLID.negate();
+
+  /** All materials which are air, see {@link Material#isAir()}. */
+  public static final MaterialMask AIR = of(Material::isAir);
+
+  private final long[] words;
+
+  private MaterialMask(long[] words) {
+    this.words = words;
+  }
+
+  /** Compiles the mask of all materials matching the predicate. */
+  public static MaterialMask of(@NonNull Predicate<Material> predicate) {
+    long[] words = newWords();
+    for (Material material : MATERIALS) {
+      if (predicate.test(material)) set(words, material);
+    }
+    return new MaterialMask(words);
+  }
+
+  public static MaterialMask of(@NonNull Material... materials) {
+    return of(Arrays.asList(materials));
+  }
+
+  public static MaterialMask of(@NonNull Collection<Material> materials) {
+    long[] words = newWords();
+    for (Material material : materials) set(words, material);
+    return new MaterialMask(words);
+  }
+
+  /**
+   * @return whether the material is part of the mask, false for null
+   */
+  public boolean contains(@Nullable Material material) {
+    if (material == null) return false;
+
+    int ordinal = material.ordinal();
+    return (words[ordinal >>> 6] & (1L << ordinal)) != 0;
+  }
+
+  /**
+   * @return a mask of all materials which are part of this mask or the other one
+   */
+  public MaterialMask union(@NonNull MaterialMask other) {
+    long[] union = newWords();
+    for (int i = 0; i < union.length; i++) union[i] = words[i] | other.words[i];
+    return new MaterialMask(union);
+  }
+
+  /**
+   * @return a mask of all materials which are part of both this mask and the other one
+   */
+  public MaterialMask intersect(@NonNull MaterialMask other) {
+    long[] intersection = newWords();
+    for (int i = 0; i < intersection.length; i++) intersection[i] = words[i] & other.words[i];
+    return new MaterialMask(intersection);
+  }
+
+  /**
+   * @return a mask of all materials which are not part of this mask
+   */
+  public MaterialMask negate() {
+    long[] negation = newWords();
+    for (int i = 0; i < negation.length; i++) negation[i] = ~words[i];
+
+    // clear the bits beyond the last material, so equal masks stay equal
+    int unusedBits = negation.length * Long.SIZE - MATERIALS.length;
+    if (unusedBits > 0) negation[negation.length - 1] &= -1L >>> unusedBits;
+    return new MaterialMask(negation);
+  }
+
+  private static long[] newWords() {
+    return new long[(MATERIALS.length + Long.SIZE - 1) / Long.SIZE];
+  }
+
+  private static void set(long[] words, Material material) {
+    int ordinal = material.ordinal();
+    words[ordinal >>> 6] |= 1L << ordinal;
+  }
+}
@@ -4,6 +4,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.ToString;
+import org.patheloper.api.util.MaterialMask;
 
 /** A Class to represent a block in the world, except exempt of Bukkit */
 @Getter
@@ -19,21 +20,21 @@ public final class PathBlock {
    * @return Whether the block is air
    */
   public boolean isAir() {
-    return blockInformation.getMaterial().isAir();
+    return MaterialMask.AIR.contains(blockInformation.getMaterial());
   }
 
   /**
    * @return Whether the block is possible to walk through
    */
   public boolean isPassable() {
-    return !isSolid();
+    return MaterialMask.PASSABLE.contains(blockInformation.getMaterial());
   }
 
   /**
    * @return Whether the block is solid
    */
   public boolean isSolid() {
-    return blockInformation.getMaterial().isSolid();
+    return MaterialMask.SOLID.contains(blockInformation.getMaterial());
   }
 
   /**
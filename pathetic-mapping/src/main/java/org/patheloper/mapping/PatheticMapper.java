@@ -5,7 +5,11 @@ import lombok.experimental.UtilityClass;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.patheloper.Pathetic;
 import org.patheloper.api.pathing.Pathfinder;
+import org.patheloper.api.pathing.configuration.HeuristicWeights;
 import org.patheloper.api.pathing.configuration.PathfinderConfiguration;
+import org.patheloper.api.pathing.heuristic.Heuristic;
+import org.patheloper.api.wrapper.PathPosition;
+import org.patheloper.model.pathing.heuristic.LandmarkHeuristic;
 import org.patheloper.model.pathing.pathfinder.AStarPathfinder;
 import org.patheloper.util.ErrorLogger;
 
@@ -54,4 +58,28 @@ public class PatheticMapper {
 
     throw ErrorLogger.logFatalError("Pathetic is not initialized yet.");
   }
+
+  /**
+   * Instantiates a new landmark heuristic for the region between the given corners. It estimates
+   * distances within the region by precomputed distances to a few landmarks, which is a lot more
+   * accurate around walls. Until those are computed, and once the region has changed, the natural
+   * weighted heuristic is used. Set it as the {@link PathfinderConfiguration#getHeuristic()
+   * heuristic} of the pathfinders searching within the region.
+   *
+   * @param corner a corner of the region
+   * @param oppositeCorner the opposite corner of the region
+   * @param landmarkCount the amount of landmarks, between 1 and {@link
+   *     LandmarkHeuristic#MAX_LANDMARKS}
+   * @return The {@link Heuristic}
+   * @throws IllegalArgumentException If the region is larger than {@link
+   *     LandmarkHeuristic#MAX_VOLUME} blocks
+   */
+  public @NonNull Heuristic newLandmarkHeuristic(
+      @NonNull PathPosition corner, @NonNull PathPosition oppositeCorner, int landmarkCount) {
+    return new LandmarkHeuristic(
+        corner,
+        oppositeCorner,
+        landmarkCount,
+        Heuristic.weighted(HeuristicWeights.NATURAL_PATH_WEIGHTS));
+  }
 }
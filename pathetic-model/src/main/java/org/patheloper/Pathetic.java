@@ -10,7 +10,9 @@ import lombok.experimental.UtilityClass;
 import lombok.extern.slf4j.Slf4j;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 import org.patheloper.bukkit.listeners.ChunkInvalidateListener;
+import org.patheloper.model.snapshot.FailingSnapshotManager;
 import org.patheloper.util.BukkitVersionUtil;
 import org.patheloper.util.ErrorLogger;
 
@@ -35,6 +37,10 @@ public class Pathetic {
     instance = javaPlugin;
     Bukkit.getPluginManager().registerEvents(new ChunkInvalidateListener(), javaPlugin);
 
+    BukkitTask snapshotTask =
+        Bukkit.getScheduler().runTaskTimer(javaPlugin, FailingSnapshotManager::tick, 1L, 1L);
+    addShutdownListener(snapshotTask::cancel);
+
     loadModelVersion();
 
     if (BukkitVersionUtil.getVersion().isUnder(16, 0)
@@ -1,7 +1,10 @@
 package org.patheloper.bukkit.listeners;
 
+import java.util.List;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockBurnEvent;
@@ -13,63 +16,92 @@ import org.bukkit.event.block.BlockPistonExtendEvent;
 import org.bukkit.event.block.BlockPistonRetractEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.block.LeavesDecayEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.patheloper.model.snapshot.FailingSnapshotManager;
 
+/**
+ * Marks chunk snapshots as outdated whenever blocks change. The handlers only record the affected
+ * chunks, the actual invalidation is coalesced and applied once per tick by the {@link
+ * FailingSnapshotManager}. Unloaded worlds are dropped right away.
+ */
 public class ChunkInvalidateListener implements Listener {
 
-  @EventHandler
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
   public void onBurn(BlockBurnEvent event) {
     handleEvent(event.getBlock());
   }
 
-  @EventHandler
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
   public void onExplode(BlockExplodeEvent event) {
     handleEvent(event.getBlock());
+    handleEvent(event.blockList());
   }
 
-  @EventHandler
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onExplode(EntityExplodeEvent event) {
+    handleEvent(event.blockList());
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
   public void onFade(BlockFadeEvent event) {
     handleEvent(event.getBlock());
   }
 
-  @EventHandler
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
   public void onFromTo(BlockFromToEvent event) {
     handleEvent(event.getBlock(), event.getToBlock());
   }
 
-  @EventHandler
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
   public void onGrow(BlockGrowEvent event) {
     handleEvent(event.getBlock());
   }
 
-  @EventHandler
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
   public void onPistonChange(BlockPistonRetractEvent event) {
     handleEvent(event.getBlock());
+    handlePistonEvent(event.getBlocks(), event.getDirection());
   }
 
-  @EventHandler
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
   public void onPistonChange(BlockPistonExtendEvent event) {
     handleEvent(event.getBlock());
+    handlePistonEvent(event.getBlocks(), event.getDirection());
   }
 
-  @EventHandler
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
   public void onPlace(BlockPlaceEvent event) {
     handleEvent(event.getBlock());
   }
 
-  @EventHandler
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
   public void onBreak(BlockBreakEvent event) {
     handleEvent(event.getBlock());
   }
 
-  @EventHandler
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
   public void onDecay(LeavesDecayEvent event) {
     handleEvent(event.getBlock());
   }
 
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onWorldUnload(WorldUnloadEvent event) {
+    FailingSnapshotManager.invalidateWorld(event.getWorld().getUID());
+  }
+
+  /** Moved blocks may end up in a neighbouring chunk, so their destination is marked as well. */
+  private void handlePistonEvent(List<Block> movedBlocks, BlockFace direction) {
+    for (Block block : movedBlocks) handleEvent(block, block.getRelative(direction));
+  }
+
+  private void handleEvent(List<Block> blocks) {
+    for (Block block : blocks) handleEvent(block);
+  }
+
   private void handleEvent(Block... blocks) {
     for (Block block : blocks)
       FailingSnapshotManager.invalidateChunk(
-          block.getWorld().getUID(), block.getChunk().getX(), block.getChunk().getZ());
+          block.getWorld().getUID(), block.getX() >> 4, block.getZ() >> 4);
   }
 }
@@ -1,14 +1,14 @@
 package org.patheloper.model.pathing;
 
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
-import org.patheloper.api.pathing.configuration.HeuristicWeights;
+import org.patheloper.api.pathing.cost.PathCostProvider;
+import org.patheloper.api.pathing.heuristic.Heuristic;
 import org.patheloper.api.wrapper.PathPosition;
-import org.patheloper.api.wrapper.PathVector;
-import org.patheloper.util.ComputingCache;
 
 @Getter
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
@@ -18,15 +18,24 @@ public class Node implements Comparable<Node> {
   @EqualsAndHashCode.Include private final PathPosition position;
   private final PathPosition start;
   private final PathPosition target;
-  private final HeuristicWeights heuristicWeights;
+  private final Heuristic.Estimator estimator;
   private final int depth;
 
-  private final ComputingCache<Double> fCostCache = new ComputingCache<>(this::calculateFCost);
-  private final ComputingCache<Double> gCostCache = new ComputingCache<>(this::calculateGCost);
-  private final ComputingCache<Double> heuristic = new ComputingCache<>(this::heuristic);
+  // computed on first access, NaN until then
+  @Getter(AccessLevel.NONE)
+  private double fCost = Double.NaN;
+
+  @Getter(AccessLevel.NONE)
+  private double gCost = Double.NaN;
+
+  @Getter(AccessLevel.NONE)
+  private double heuristic = Double.NaN;
 
   @Setter private Node parent;
 
+  /** The cost per block of moving into this node, see {@link PathCostProvider}. */
+  @Setter private double blockCost = PathCostProvider.DEFAULT_COST;
+
   public boolean isTarget() {
     return this.position.getBlockX() == target.getBlockX()
         && this.position.getBlockY() == target.getBlockY()
@@ -40,7 +49,18 @@ public class Node implements Comparable<Node> {
    * @return the estimated total cost (represented by the F-Score)
    */
   public double getFCost() {
-    return fCostCache.get();
+    if (Double.isNaN(fCost)) fCost = getGCost() + getHeuristic();
+    return fCost;
+  }
+
+  /**
+   * @return the estimated cost from this node to the target, see {@link Heuristic}
+   */
+  public double getHeuristic() {
+    if (Double.isNaN(heuristic))
+      heuristic =
+          estimator.estimate(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+    return heuristic;
   }
 
   /**
@@ -49,44 +69,12 @@ public class Node implements Comparable<Node> {
    * typically calculated by summing the movement costs from the start node to the current node.
    */
   private double getGCost() {
-    return gCostCache.get();
-  }
-
-  private double calculateFCost() {
-    return getGCost() + heuristic.get();
-  }
-
-  private double calculateGCost() {
-    if (parent == null) {
-      return 0;
-    }
-    return parent.getGCost() + position.distance(parent.position);
-  }
-
-  private double heuristic() {
-    double manhattanDistance = this.position.manhattanDistance(target);
-    double octileDistance = this.position.octileDistance(target);
-    double perpendicularDistance = calculatePerpendicularDistance();
-    double heightDifference = Math.abs(this.position.getBlockY() - target.getBlockY());
-
-    double manhattanWeight = heuristicWeights.getManhattanWeight();
-    double octileWeight = heuristicWeights.getOctileWeight();
-    double perpendicularWeight = heuristicWeights.getPerpendicularWeight();
-    double heightWeight = heuristicWeights.getHeightWeight();
-
-    // Ensure the combined heuristic is consistent
-    return Math.max(
-        manhattanDistance * manhattanWeight,
-        octileDistance * octileWeight
-            + perpendicularDistance * perpendicularWeight
-            + heightDifference * heightWeight);
-  }
-
-  private double calculatePerpendicularDistance() {
-    PathVector a = this.position.toVector();
-    PathVector b = this.start.toVector();
-    PathVector c = this.target.toVector();
-    return a.subtract(b).getCrossProduct(c.subtract(b)).length() / c.subtract(b).length();
+    if (Double.isNaN(gCost))
+      gCost =
+          parent == null
+              ? 0
+              : parent.getGCost() + position.distance(parent.position) * blockCost;
+    return gCost;
   }
 
   @Override
@@ -95,7 +83,7 @@ public class Node implements Comparable<Node> {
     if (fCostComparison != 0) {
       return fCostComparison;
     }
-    int heuristicComparison = Double.compare(this.heuristic.get(), o.heuristic.get());
+    int heuristicComparison = Double.compare(this.getHeuristic(), o.getHeuristic());
     if (heuristicComparison != 0) {
       return heuristicComparison;
     }
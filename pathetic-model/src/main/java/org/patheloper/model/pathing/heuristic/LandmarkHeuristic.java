@@ -0,0 +1,421 @@
+package org.patheloper.model.pathing.heuristic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.Nullable;
+import lombok.NonNull;
+import org.patheloper.Pathetic;
+import org.patheloper.api.pathing.heuristic.Heuristic;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathEnvironment;
+import org.patheloper.api.wrapper.PathPosition;
+import org.patheloper.model.snapshot.ChunkVersions;
+import org.patheloper.model.snapshot.FailingSnapshotManager;
+import org.patheloper.util.ErrorLogger;
+
+/**
+ * A {@link Heuristic} based on the distances from every passable block of a fixed region to a few
+ * landmarks within it, also known as ALT. Since no path can be shorter than the difference of the
+ * distances of its ends to any landmark, the largest such difference is a lower bound of the
+ * remaining distance which, unlike the distance metrics, knows about walls. Searches through
+ * mazes, caves or cities expand a lot fewer nodes with it.
+ *
+ * <p>The distances are precomputed in the background by flooding the passable blocks of the region
+ * from each landmark, reading only chunks which are loaded. Unloaded chunks would count as walls,
+ * which could make the estimate too high, so distances are only used once every chunk of the region
+ * could be read. Landmarks are picked one by one as the block farthest from all landmarks picked so
+ * far. Each distance takes two bytes per block and landmark, so volume and landmarks are capped
+ * together by {@link #MAX_DISTANCES}: the distances take at most 32 MiB, e.g. a region of
+ * {@link #MAX_VOLUME} blocks with 4 landmarks or a quarter of that with 16. Computing them takes up
+ * to 16 MiB on top, two bytes per block for the running flood and two for the distance to the
+ * closest landmark.
+ *
+ * <p>Distances are measured through passable blocks within the region only, in any of the 26
+ * directions. The estimate is therefore only a lower bound for searches which path through
+ * passable blocks and don't need to leave the region for a shorter path. It is never lower than
+ * the estimate of the fallback heuristic, which is used on its own for blocks outside the region.
+ *
+ * <p>While the distances are being computed, once any chunk of the region has changed, and for
+ * targets outside the region, searches use the fallback heuristic instead. Outdated distances are
+ * recomputed in the background once a search asks for them, at most every 10 seconds.
+ */
+public class LandmarkHeuristic implements Heuristic {
+
+  /** The largest region, in blocks, distances are computed for. */
+  public static final int MAX_VOLUME = 1 << 22;
+
+  public static final int MAX_LANDMARKS = 16;
+
+  /** The largest amount of distances, i.e. blocks times landmarks, computed for a region. */
+  public static final int MAX_DISTANCES = 1 << 24;
+
+  /** The costs of a straight, diagonal and cubic diagonal step, in tenths of a block. */
+  private static final int STRAIGHT_COST = 10;
+  private static final int DIAGONAL_COST = 14;
+  private static final int CUBIC_COST = 17;
+
+  private static final int[] STEP_COSTS = {0, STRAIGHT_COST, DIAGONAL_COST, CUBIC_COST};
+
+  private static final char UNREACHED = Character.MAX_VALUE;
+
+  /** How long the region counts as unchanged after its chunk versions have been compared. */
+  private static final long VERSION_CHECK_INTERVAL = 1000;
+
+  /** The least time between two automatic precomputations, so busy regions don't take a core. */
+  private static final long PRECOMPUTE_INTERVAL = 10_000;
+
+  private static final SnapshotManager SNAPSHOT_MANAGER = new FailingSnapshotManager();
+
+  private static final ExecutorService PRECOMPUTING_EXECUTOR = Executors.newWorkStealingPool(1);
+
+  static {
+    Pathetic.addShutdownListener(PRECOMPUTING_EXECUTOR::shutdown);
+  }
+
+  private final PathEnvironment environment;
+  private final int minX;
+  private final int minY;
+  private final int minZ;
+  private final int sizeX;
+  private final int sizeY;
+  private final int sizeZ;
+  private final int landmarkCount;
+  private final Heuristic fallback;
+
+  private volatile LandmarkDistances distances;
+  private CompletableFuture<Void> precomputation;
+  private long precomputedAt;
+
+  /**
+   * @param corner a corner of the region
+   * @param oppositeCorner the opposite corner of the region, the region includes both corners
+   * @param landmarkCount the amount of landmarks, more landmarks give better estimates but take
+   *     longer to compute and more memory
+   * @param fallback the heuristic used while there are no up-to-date distances
+   * @throws IllegalArgumentException if the corners are in different worlds, the region is larger
+   *     than {@link #MAX_VOLUME}, the amount of landmarks is not between 1 and {@link
+   *     #MAX_LANDMARKS} or the region times the landmarks exceeds {@link #MAX_DISTANCES}
+   */
+  public LandmarkHeuristic(
+      @NonNull PathPosition corner,
+      @NonNull PathPosition oppositeCorner,
+      int landmarkCount,
+      @NonNull Heuristic fallback) {
+    if (!corner.getPathEnvironment().equals(oppositeCorner.getPathEnvironment()))
+      throw new IllegalArgumentException("The corners must be in the same world");
+    if (landmarkCount < 1 || landmarkCount > MAX_LANDMARKS)
+      throw new IllegalArgumentException("Landmark count out of range: " + landmarkCount);
+
+    this.environment = corner.getPathEnvironment();
+    this.minX = Math.min(corner.getBlockX(), oppositeCorner.getBlockX());
+    this.minY =
+        Math.max(
+            Math.min(corner.getBlockY(), oppositeCorner.getBlockY()), environment.getMinHeight());
+    this.minZ = Math.min(corner.getBlockZ(), oppositeCorner.getBlockZ());
+    this.sizeX = Math.max(corner.getBlockX(), oppositeCorner.getBlockX()) - minX + 1;
+    this.sizeY =
+        Math.min(
+                Math.max(corner.getBlockY(), oppositeCorner.getBlockY()),
+                environment.getMaxHeight() - 1)
+            - minY
+            + 1;
+    this.sizeZ = Math.max(corner.getBlockZ(), oppositeCorner.getBlockZ()) - minZ + 1;
+    this.landmarkCount = landmarkCount;
+    this.fallback = fallback;
+
+    long volume = (long) sizeX * sizeY * sizeZ;
+    if (sizeY < 1 || volume > MAX_VOLUME)
+      throw new IllegalArgumentException("The region must hold 1 to " + MAX_VOLUME + " blocks");
+    if (volume * landmarkCount > MAX_DISTANCES)
+      throw new IllegalArgumentException(
+          "The region may hold at most " + MAX_DISTANCES / landmarkCount + " blocks with "
+              + landmarkCount + " landmarks");
+  }
+
+  @Override
+  public Estimator prepare(@NonNull PathPosition start, @NonNull PathPosition target) {
+    LandmarkDistances landmarkDistances = this.distances;
+    if (landmarkDistances == null || !landmarkDistances.isCurrent()) {
+      precomputeIfDue();
+      return fallback.prepare(start, target);
+    }
+
+    int targetX = target.getBlockX();
+    int targetY = target.getBlockY();
+    int targetZ = target.getBlockZ();
+    if (!target.getPathEnvironment().equals(environment) || !contains(targetX, targetY, targetZ))
+      return fallback.prepare(start, target);
+
+    Estimator fallbackEstimator = fallback.prepare(start, target);
+    char[][] landmarks = landmarkDistances.distances;
+    char[] targetDistances = new char[landmarks.length];
+    int targetIndex = getIndex(targetX, targetY, targetZ);
+    for (int landmark = 0; landmark < landmarks.length; landmark++)
+      targetDistances[landmark] = landmarks[landmark][targetIndex];
+
+    return (x, y, z) -> {
+      double fallbackEstimate = fallbackEstimator.estimate(x, y, z);
+      if (!contains(x, y, z)) return fallbackEstimate;
+
+      int index = getIndex(x, y, z);
+      int bound = 0;
+      for (int landmark = 0; landmark < landmarks.length; landmark++) {
+        char distance = landmarks[landmark][index];
+        if (distance == UNREACHED || targetDistances[landmark] == UNREACHED) continue;
+        bound = Math.max(bound, Math.abs(targetDistances[landmark] - distance));
+      }
+      return Math.max(fallbackEstimate, bound / (double) STRAIGHT_COST);
+    };
+  }
+
+  /**
+   * Computes the distances in the background, unless that is already happening. Searches use the
+   * new distances as soon as they are done. This is called automatically by the first search
+   * after the distances are missing or outdated, but may be called ahead of time as well.
+   *
+   * <p>If any chunk of the region is not loaded, the distances are left as they were, and computed
+   * again by a later search once they are due.
+   *
+   * @return a future completing once the distances have been computed
+   */
+  public synchronized CompletableFuture<Void> precompute() {
+    if (precomputation != null && !precomputation.isDone()) return precomputation;
+
+    precomputedAt = System.currentTimeMillis();
+    precomputation =
+        CompletableFuture.runAsync(this::updateDistances, PRECOMPUTING_EXECUTOR)
+            .whenComplete(
+                (ignored, throwable) -> {
+                  if (throwable != null)
+                    ErrorLogger.logFatalError("Failed to compute landmark distances", throwable);
+                });
+    return precomputation;
+  }
+
+  private synchronized void precomputeIfDue() {
+    if (precomputation == null
+        || System.currentTimeMillis() - precomputedAt >= PRECOMPUTE_INTERVAL) precompute();
+  }
+
+  private void updateDistances() {
+    LandmarkDistances landmarkDistances = computeDistances();
+    if (landmarkDistances != null) distances = landmarkDistances;
+  }
+
+  /** @return the distances, or null if not every chunk of the region could be read */
+  @Nullable
+  private LandmarkDistances computeDistances() {
+    // read before the blocks, so changes while reading leave the distances outdated right away
+    int[] versions = readChunkVersions();
+    BitSet passable = readPassability();
+    if (passable == null) return null;
+
+    List<char[]> distances = new ArrayList<>(landmarkCount);
+    int seed = findSeed(passable);
+    if (seed < 0) return new LandmarkDistances(versions, new char[0][]);
+
+    char[] farthest = new char[sizeX * sizeY * sizeZ];
+    Arrays.fill(farthest, UNREACHED);
+    int landmark = findFarthest(flood(passable, seed), farthest);
+    while (landmark >= 0 && distances.size() < landmarkCount) {
+      char[] landmarkDistances = flood(passable, landmark);
+      distances.add(landmarkDistances);
+      landmark = findFarthest(landmarkDistances, farthest);
+    }
+    return new LandmarkDistances(versions, distances.toArray(new char[0][]));
+  }
+
+  /** @return the passable blocks of the region, or null if a chunk of it is not loaded */
+  @Nullable
+  private BitSet readPassability() {
+    BitSet passable = new BitSet(sizeX * sizeY * sizeZ);
+    BitSet column = new BitSet();
+
+    // chunk by chunk, so only a single chunk snapshot is needed per read
+    for (int chunkMinX = minX; chunkMinX < minX + sizeX; chunkMinX = (chunkMinX & ~15) + 16)
+      for (int chunkMinZ = minZ; chunkMinZ < minZ + sizeZ; chunkMinZ = (chunkMinZ & ~15) + 16) {
+        int columnSizeX = Math.min((chunkMinX & ~15) + 16, minX + sizeX) - chunkMinX;
+        int columnSizeZ = Math.min((chunkMinZ & ~15) + 16, minZ + sizeZ) - chunkMinZ;
+        if (SNAPSHOT_MANAGER.getMaterial(environment, chunkMinX, minY, chunkMinZ) == null)
+          return null;
+
+        SNAPSHOT_MANAGER.getPassability(
+            new PathPosition(environment, chunkMinX, minY, chunkMinZ),
+            columnSizeX,
+            sizeY,
+            columnSizeZ,
+            column);
+
+        for (int y = 0; y < sizeY; y++)
+          for (int z = 0; z < columnSizeZ; z++)
+            for (int x = 0; x < columnSizeX; x++) {
+              if (column.get((y * columnSizeZ + z) * columnSizeX + x))
+                passable.set(getIndex(chunkMinX + x, minY + y, chunkMinZ + z));
+            }
+      }
+    return passable;
+  }
+
+  /** @return the passable block closest to the center of the region, or -1 if there is none */
+  private int findSeed(BitSet passable) {
+    int centerX = minX + sizeX / 2;
+    int centerY = minY + sizeY / 2;
+    int centerZ = minZ + sizeZ / 2;
+
+    int seed = -1;
+    long seedDistance = Long.MAX_VALUE;
+    for (int index = passable.nextSetBit(0); index >= 0; index = passable.nextSetBit(index + 1)) {
+      long dx = minX + index % sizeX - centerX;
+      long dz = minZ + index / sizeX % sizeZ - centerZ;
+      long dy = minY + index / (sizeX * sizeZ) - centerY;
+      long distance = dx * dx + dy * dy + dz * dz;
+      if (distance < seedDistance) {
+        seed = index;
+        seedDistance = distance;
+      }
+    }
+    return seed;
+  }
+
+  /**
+   * Lowers the distance of every block to its closest landmark by the given distances, and picks
+   * the block reached by them which is farthest from all landmarks.
+   *
+   * @return the block, or -1 if every reached block is a landmark already
+   */
+  private int findFarthest(char[] distances, char[] farthest) {
+    int block = -1;
+    int blockDistance = 0;
+    for (int index = 0; index < distances.length; index++) {
+      if (distances[index] == UNREACHED) continue;
+
+      farthest[index] = (char) Math.min(farthest[index], distances[index]);
+      if (farthest[index] > blockDistance) {
+        block = index;
+        blockDistance = farthest[index];
+      }
+    }
+    return block;
+  }
+
+  /**
+   * Runs Dijkstra from the given block over the passable blocks of the region. Step costs are small
+   * integers, so the queue is a ring of buckets, one per distance, instead of a heap.
+   *
+   * @return the distance of every block in tenths of a block, {@link #UNREACHED} if there is no
+   *     path or it is longer than a char can hold
+   */
+  private char[] flood(BitSet passable, int source) {
+    char[] distances = new char[sizeX * sizeY * sizeZ];
+    Arrays.fill(distances, UNREACHED);
+
+    int[][] buckets = new int[CUBIC_COST + 1][16];
+    int[] bucketSizes = new int[buckets.length];
+
+    distances[source] = 0;
+    buckets[0][bucketSizes[0]++] = source;
+    int queued = 1;
+
+    for (int distance = 0; queued > 0; distance++) {
+      int bucket = distance % buckets.length;
+      // steps cost at least one bucket less than there are, so nothing is added to this one
+      for (int i = 0; i < bucketSizes[bucket]; i++) {
+        int index = buckets[bucket][i];
+        if (distances[index] != distance) continue; // reached cheaper in the meantime
+
+        int x = index % sizeX;
+        int z = index / sizeX % sizeZ;
+        int y = index / (sizeX * sizeZ);
+        for (int dy = -1; dy <= 1; dy++)
+          for (int dz = -1; dz <= 1; dz++)
+            for (int dx = -1; dx <= 1; dx++) {
+              int nx = x + dx;
+              int ny = y + dy;
+              int nz = z + dz;
+              if (nx < 0 || ny < 0 || nz < 0 || nx >= sizeX || ny >= sizeY || nz >= sizeZ)
+                continue;
+
+              int neighbour = (ny * sizeZ + nz) * sizeX + nx;
+              int neighbourDistance = distance + STEP_COSTS[(dx & 1) + (dy & 1) + (dz & 1)];
+              if (neighbourDistance >= UNREACHED
+                  || neighbourDistance >= distances[neighbour]
+                  || !passable.get(neighbour)) continue;
+
+              distances[neighbour] = (char) neighbourDistance;
+              int neighbourBucket = neighbourDistance % buckets.length;
+              if (bucketSizes[neighbourBucket] == buckets[neighbourBucket].length)
+                buckets[neighbourBucket] =
+                    Arrays.copyOf(buckets[neighbourBucket], bucketSizes[neighbourBucket] * 2);
+              buckets[neighbourBucket][bucketSizes[neighbourBucket]++] = neighbour;
+              queued++;
+            }
+      }
+      queued -= bucketSizes[bucket];
+      bucketSizes[bucket] = 0;
+    }
+    return distances;
+  }
+
+  private int[] readChunkVersions() {
+    int minChunkX = minX >> 4;
+    int minChunkZ = minZ >> 4;
+    int chunksX = ((minX + sizeX - 1) >> 4) - minChunkX + 1;
+    int chunksZ = ((minZ + sizeZ - 1) >> 4) - minChunkZ + 1;
+
+    int[] versions = new int[chunksX * chunksZ];
+    for (int chunkZ = 0; chunkZ < chunksZ; chunkZ++)
+      for (int chunkX = 0; chunkX < chunksX; chunkX++)
+        versions[chunkZ * chunksX + chunkX] =
+            ChunkVersions.getVersion(
+                environment.getUuid(), minChunkX + chunkX, minChunkZ + chunkZ);
+    return versions;
+  }
+
+  private boolean contains(int x, int y, int z) {
+    return x >= minX
+        && y >= minY
+        && z >= minZ
+        && x < minX + sizeX
+        && y < minY + sizeY
+        && z < minZ + sizeZ;
+  }
+
+  private int getIndex(int x, int y, int z) {
+    return ((y - minY) * sizeZ + (z - minZ)) * sizeX + (x - minX);
+  }
+
+  /** The distances to all landmarks, along with the chunk versions they were computed at. */
+  private final class LandmarkDistances {
+
+    private final int[] versions;
+
+    /** The distances of every block to each landmark, indexed like the blocks of the region. */
+    private final char[][] distances;
+
+    private volatile long checkedAt = System.currentTimeMillis();
+    private volatile boolean current = true;
+
+    LandmarkDistances(int[] versions, char[][] distances) {
+      this.versions = versions;
+      this.distances = distances;
+    }
+
+    /**
+     * Checks whether no chunk of the region has changed since. The chunks are compared at most
+     * once per {@link #VERSION_CHECK_INTERVAL}, outdated distances still only guide the search.
+     */
+    boolean isCurrent() {
+      long now = System.currentTimeMillis();
+      if (!current || now - checkedAt < VERSION_CHECK_INTERVAL) return current;
+
+      current = Arrays.equals(versions, readChunkVersions());
+      checkedAt = now;
+      return current;
+    }
+  }
+}
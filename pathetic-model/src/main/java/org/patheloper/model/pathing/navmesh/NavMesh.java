@@ -0,0 +1,234 @@
+package org.patheloper.model.pathing.navmesh;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import lombok.Value;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathEnvironment;
+import org.patheloper.model.snapshot.ChunkVersions;
+import org.patheloper.util.ChunkUtils;
+import org.patheloper.util.ExpiringHashMap;
+
+/**
+ * The navigation mesh of a world, made of the walkable regions of its chunk sections, see {@link
+ * NavMeshSection}. Regions are linked to the regions an entity can walk to from them, on the same
+ * layer, by stepping up or by dropping down, through portals along their shared edge.
+ *
+ * <p>Sections are built when they are first needed and shared between searches for entities of the
+ * same height. Once a chunk moves on to another {@link ChunkVersions version}, only its sections
+ * are rebuilt, the next time they are needed. Sections are built by the search needing them,
+ * which keeps the work off the main thread for async pathfinders. Sections with blocks missing are
+ * only used by the search which read them.
+ *
+ * <p>An instance resolves the sections of a single search and keeps them for its duration.
+ */
+public final class NavMesh {
+
+  private static final Map<MeshKey, Map<Long, ExpiringHashMap.Entry<NavMeshSection>>> SECTIONS =
+      new ConcurrentHashMap<>();
+
+  private static final int[][] DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+
+  private final SnapshotManager snapshotManager;
+  private final PathEnvironment environment;
+  private final int height;
+  private final int maxStepUp;
+  private final int maxDrop;
+  private final Map<Long, ExpiringHashMap.Entry<NavMeshSection>> sharedSections;
+  private final Map<Long, NavMeshSection> sections = new HashMap<>();
+
+  /**
+   * @param height the height of the entity in blocks
+   * @param maxStepUp the highest step an entity may climb between two regions
+   * @param maxDrop the deepest drop an entity may fall between two regions
+   */
+  public NavMesh(
+      SnapshotManager snapshotManager,
+      PathEnvironment environment,
+      int height,
+      int maxStepUp,
+      int maxDrop) {
+    this.snapshotManager = snapshotManager;
+    this.environment = environment;
+    this.height = Math.max(1, height);
+    this.maxStepUp = Math.max(0, maxStepUp);
+    this.maxDrop = Math.max(0, maxDrop);
+    this.sharedSections =
+        SECTIONS.computeIfAbsent(
+            new MeshKey(environment.getUuid(), this.height), key -> new ExpiringHashMap<>());
+  }
+
+  PathEnvironment getEnvironment() {
+    return environment;
+  }
+
+  /** @return the region of the given block, or null if the block is not walkable */
+  @Nullable
+  NavMeshRegion getRegion(int x, int y, int z) {
+    NavMeshSection section = getSection(x >> 4, y >> 4, z >> 4);
+    return section == null ? null : section.getRegion(x, y, z);
+  }
+
+  private boolean isPassable(int x, int y, int z) {
+    NavMeshSection section = getSection(x >> 4, y >> 4, z >> 4);
+    return section != null && section.isPassable(x, y, z);
+  }
+
+  /**
+   * Walks the edges of the region and collects the regions an entity can walk to across them.
+   *
+   * @return the portal to each neighbouring region
+   */
+  Map<NavMeshRegion, Portal> getNeighbours(NavMeshRegion region) {
+    Map<NavMeshRegion, Portal> neighbours = new LinkedHashMap<>();
+    for (int[] direction : DIRECTIONS) {
+      int dx = direction[0];
+      int dz = direction[1];
+
+      if (dx != 0) {
+        int x = dx > 0 ? region.maxX : region.minX;
+        int edgeX = dx > 0 ? region.maxX + 1 : region.minX;
+        for (int z = region.minZ; z <= region.maxZ; z++) {
+          NavMeshRegion neighbour = findEnteredRegion(x, region.y, z, x + dx, z);
+          if (neighbour != null)
+            addPortal(neighbours, neighbour, region, edgeX, z, edgeX, z + 1);
+        }
+      } else {
+        int z = dz > 0 ? region.maxZ : region.minZ;
+        int edgeZ = dz > 0 ? region.maxZ + 1 : region.minZ;
+        for (int x = region.minX; x <= region.maxX; x++) {
+          NavMeshRegion neighbour = findEnteredRegion(x, region.y, z, x, z + dz);
+          if (neighbour != null)
+            addPortal(neighbours, neighbour, region, x, edgeZ, x + 1, edgeZ);
+        }
+      }
+    }
+    return neighbours;
+  }
+
+  /**
+   * Finds the region an entity ends up in when walking from the given block into the neighbouring
+   * column, the same way as a search in {@link
+   * org.patheloper.api.pathing.configuration.SearchMode#SURFACE surface} mode would. If the entity
+   * fits into the column, it walks in and drops onto the first ground, otherwise it steps up onto
+   * the lowest block it fits on.
+   */
+  @Nullable
+  private NavMeshRegion findEnteredRegion(int x, int y, int z, int neighbourX, int neighbourZ) {
+    if (isClear(neighbourX, y, neighbourZ)) {
+      for (int drop = 0; drop <= maxDrop; drop++) {
+        NavMeshRegion region = getRegion(neighbourX, y - drop, neighbourZ);
+        if (region != null) return region;
+        if (!isPassable(neighbourX, y - drop - 1, neighbourZ)) return null;
+      }
+      return null;
+    }
+
+    for (int step = 1; step <= maxStepUp; step++) {
+      // the head has to fit through above the current block while climbing
+      if (!isPassable(x, y + height - 1 + step, z)) return null;
+
+      NavMeshRegion region = getRegion(neighbourX, y + step, neighbourZ);
+      if (region != null) return region;
+    }
+    return null;
+  }
+
+  /** @return whether the entity fits into the column from the given block upwards */
+  private boolean isClear(int x, int y, int z) {
+    for (int dy = 0; dy < height; dy++) {
+      if (!isPassable(x, y + dy, z)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Adds the edge of a single block to the portal to the neighbour. Edges continuing the portal
+   * lengthen it, other ones are dropped, so that each portal stays a straight line.
+   */
+  private static void addPortal(
+      Map<NavMeshRegion, Portal> neighbours,
+      NavMeshRegion neighbour,
+      NavMeshRegion region,
+      int fromX,
+      int fromZ,
+      int toX,
+      int toZ) {
+    Portal portal = neighbours.get(neighbour);
+    if (portal == null) {
+      neighbours.put(
+          neighbour,
+          new Portal(fromX, fromZ, toX, toZ, Math.max(region.y, neighbour.y)));
+    } else if (portal.toX == fromX && portal.toZ == fromZ) {
+      portal.toX = toX;
+      portal.toZ = toZ;
+    }
+  }
+
+  /**
+   * @return the section, or null if it lies outside of the world
+   */
+  @Nullable
+  private NavMeshSection getSection(int sectionX, int sectionY, int sectionZ) {
+    if (sectionY < environment.getMinHeight() >> 4
+        || sectionY > (environment.getMaxHeight() - 1) >> 4) return null;
+
+    long sectionKey = ChunkUtils.getSectionKey(sectionX, sectionY, sectionZ);
+    NavMeshSection section = sections.get(sectionKey);
+    if (section != null) return section;
+
+    int version = ChunkVersions.getVersion(environment.getUuid(), sectionX, sectionZ);
+    ExpiringHashMap.Entry<NavMeshSection> entry = sharedSections.get(sectionKey);
+    if (entry != null && entry.getValue().version == version) {
+      section = entry.getValue();
+    } else {
+      section =
+          NavMeshSection.build(
+              snapshotManager,
+              environment,
+              sectionKey,
+              sectionX,
+              sectionY,
+              sectionZ,
+              height,
+              version);
+      if (section.complete
+          && version == ChunkVersions.getVersion(environment.getUuid(), sectionX, sectionZ))
+        sharedSections.put(sectionKey, new ExpiringHashMap.Entry<>(section));
+    }
+
+    sections.put(sectionKey, section);
+    return section;
+  }
+
+  @Value
+  private static class MeshKey {
+    UUID worldUUID;
+    int height;
+  }
+
+  /**
+   * The shared edge of two regions, as a line between two corners of blocks. The height is the one
+   * of the higher region, which an entity passes the edge at.
+   */
+  static final class Portal {
+
+    final int fromX;
+    final int fromZ;
+    int toX;
+    int toZ;
+    final int y;
+
+    Portal(int fromX, int fromZ, int toX, int toZ, int y) {
+      this.fromX = fromX;
+      this.fromZ = fromZ;
+      this.toX = toX;
+      this.toZ = toZ;
+      this.y = y;
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package org.patheloper.model.pathing.navmesh;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * A rectangle of walkable blocks on a single layer of a chunk section. Regions are equal if they
+ * are the same region of the same section, even if the section has been read twice.
+ */
+@ToString
+@EqualsAndHashCode(of = {"sectionKey", "id"})
+final class NavMeshRegion {
+
+  final long sectionKey;
+  final int id;
+  final int minX;
+  final int maxX;
+  final int y;
+  final int minZ;
+  final int maxZ;
+
+  NavMeshRegion(long sectionKey, int id, int minX, int maxX, int y, int minZ, int maxZ) {
+    this.sectionKey = sectionKey;
+    this.id = id;
+    this.minX = minX;
+    this.maxX = maxX;
+    this.y = y;
+    this.minZ = minZ;
+    this.maxZ = maxZ;
+  }
+
+  double getCenterX() {
+    return (minX + maxX + 1) / 2.0;
+  }
+
+  double getCenterZ() {
+    return (minZ + maxZ + 1) / 2.0;
+  }
+}
@@ -0,0 +1,266 @@
+package org.patheloper.model.pathing.navmesh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import lombok.experimental.UtilityClass;
+import org.patheloper.api.wrapper.PathEnvironment;
+import org.patheloper.api.wrapper.PathPosition;
+
+/**
+ * Finds paths over a {@link NavMesh}. The route is searched with A* over the regions, each entered
+ * at the middle of its portal, and then pulled taut through the portals along the route with the
+ * funnel algorithm. The result only holds the waypoints at which the path turns, an entity walks
+ * in a straight line from one to the next.
+ */
+@UtilityClass
+public class NavMeshRouter {
+
+  /**
+   * Searches the waypoints of a path between two blocks an entity can stand in.
+   *
+   * @param maxRegions the maximum amount of regions to expand before giving up
+   * @param width the width of the entity in blocks, the path keeps half of it away from the sides
+   *     of the portals
+   * @return the waypoints from the start to the target, or empty if either is not walkable or no
+   *     route has been found
+   */
+  public Optional<List<PathPosition>> findWaypoints(
+      NavMesh navMesh,
+      PathPosition startBlock,
+      PathPosition targetBlock,
+      int maxRegions,
+      int width) {
+    NavMeshRegion startRegion =
+        navMesh.getRegion(startBlock.getBlockX(), startBlock.getBlockY(), startBlock.getBlockZ());
+    NavMeshRegion targetRegion =
+        navMesh.getRegion(
+            targetBlock.getBlockX(), targetBlock.getBlockY(), targetBlock.getBlockZ());
+    if (startRegion == null || targetRegion == null) return Optional.empty();
+
+    RegionNode targetNode = findRoute(navMesh, startRegion, targetRegion, startBlock, maxRegions);
+    if (targetNode == null) return Optional.empty();
+
+    List<RegionNode> route = new ArrayList<>();
+    for (RegionNode node = targetNode; node != null; node = node.parent) route.add(node);
+    Collections.reverse(route);
+
+    return Optional.of(
+        pullTaut(navMesh.getEnvironment(), route, startBlock, targetBlock, width / 2.0));
+  }
+
+  private RegionNode findRoute(
+      NavMesh navMesh,
+      NavMeshRegion startRegion,
+      NavMeshRegion targetRegion,
+      PathPosition startBlock,
+      int maxRegions) {
+    double targetX = targetRegion.getCenterX();
+    double targetZ = targetRegion.getCenterZ();
+
+    PriorityQueue<RegionNode> openNodes =
+        new PriorityQueue<>(Comparator.comparingDouble(node -> node.estimatedCost));
+    Map<NavMeshRegion, Double> costs = new HashMap<>();
+    Set<NavMeshRegion> closedRegions = new HashSet<>();
+
+    openNodes.add(
+        new RegionNode(
+            startRegion,
+            null,
+            null,
+            startBlock.getBlockX() + 0.5,
+            startBlock.getBlockY(),
+            startBlock.getBlockZ() + 0.5,
+            0,
+            0));
+    costs.put(startRegion, 0.0);
+
+    while (!openNodes.isEmpty() && closedRegions.size() < maxRegions) {
+      RegionNode node = openNodes.poll();
+      if (!closedRegions.add(node.region)) continue;
+      if (node.region.equals(targetRegion)) return node;
+
+      for (Map.Entry<NavMeshRegion, NavMesh.Portal> neighbour :
+          navMesh.getNeighbours(node.region).entrySet()) {
+        NavMeshRegion region = neighbour.getKey();
+        if (closedRegions.contains(region)) continue;
+
+        NavMesh.Portal portal = neighbour.getValue();
+        double x = (portal.fromX + portal.toX) / 2.0;
+        double z = (portal.fromZ + portal.toZ) / 2.0;
+        double cost = node.cost + getDistance(node.x, node.y, node.z, x, portal.y, z);
+        if (cost >= costs.getOrDefault(region, Double.MAX_VALUE)) continue;
+
+        costs.put(region, cost);
+        double estimatedCost =
+            cost + getDistance(x, portal.y, z, targetX, targetRegion.y, targetZ);
+        openNodes.add(new RegionNode(region, node, portal, x, portal.y, z, cost, estimatedCost));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Runs the funnel algorithm along the portals of the route. The funnel is spanned from its apex
+   * to both ends of the portals and narrowed portal by portal, and whenever one of its sides would
+   * cross the other, the corner of that side becomes a waypoint and the new apex.
+   *
+   * @param margin how far to keep away from the ends of the portals
+   */
+  private List<PathPosition> pullTaut(
+      PathEnvironment environment,
+      List<RegionNode> route,
+      PathPosition startBlock,
+      PathPosition targetBlock,
+      double margin) {
+    int count = route.size() + 1;
+    double[] leftX = new double[count];
+    double[] leftZ = new double[count];
+    double[] rightX = new double[count];
+    double[] rightZ = new double[count];
+    int[] heights = new int[count];
+
+    leftX[0] = rightX[0] = startBlock.getBlockX() + 0.5;
+    leftZ[0] = rightZ[0] = startBlock.getBlockZ() + 0.5;
+    heights[0] = startBlock.getBlockY();
+    for (int i = 1; i < route.size(); i++) {
+      NavMesh.Portal portal = route.get(i).portal;
+      NavMeshRegion from = route.get(i - 1).region;
+
+      // portals run along a single axis, towards larger coordinates
+      double length = portal.toX - portal.fromX + portal.toZ - portal.fromZ;
+      double inset = Math.min(margin, length / 2) / length;
+      double fromX = portal.fromX + (portal.toX - portal.fromX) * inset;
+      double fromZ = portal.fromZ + (portal.toZ - portal.fromZ) * inset;
+      double toX = portal.toX + (portal.fromX - portal.toX) * inset;
+      double toZ = portal.toZ + (portal.fromZ - portal.toZ) * inset;
+
+      boolean fromIsLeft =
+          getArea(from.getCenterX(), from.getCenterZ(), fromX, fromZ, toX, toZ) > 0;
+      leftX[i] = fromIsLeft ? fromX : toX;
+      leftZ[i] = fromIsLeft ? fromZ : toZ;
+      rightX[i] = fromIsLeft ? toX : fromX;
+      rightZ[i] = fromIsLeft ? toZ : fromZ;
+      heights[i] = portal.y;
+    }
+    leftX[count - 1] = rightX[count - 1] = targetBlock.getBlockX() + 0.5;
+    leftZ[count - 1] = rightZ[count - 1] = targetBlock.getBlockZ() + 0.5;
+    heights[count - 1] = targetBlock.getBlockY();
+
+    List<PathPosition> waypoints = new ArrayList<>();
+    waypoints.add(startBlock);
+
+    double apexX = leftX[0];
+    double apexZ = leftZ[0];
+    double funnelLeftX = apexX;
+    double funnelLeftZ = apexZ;
+    double funnelRightX = apexX;
+    double funnelRightZ = apexZ;
+    int apexIndex = 0;
+    int leftIndex = 0;
+    int rightIndex = 0;
+    for (int i = 1; i < count; i++) {
+      if (getArea(apexX, apexZ, funnelRightX, funnelRightZ, rightX[i], rightZ[i]) <= 0) {
+        if ((apexX == funnelRightX && apexZ == funnelRightZ)
+            || getArea(apexX, apexZ, funnelLeftX, funnelLeftZ, rightX[i], rightZ[i]) > 0) {
+          funnelRightX = rightX[i];
+          funnelRightZ = rightZ[i];
+          rightIndex = i;
+        } else {
+          // the right side crosses the left one, so the path turns around the left corner
+          apexX = funnelRightX = funnelLeftX;
+          apexZ = funnelRightZ = funnelLeftZ;
+          apexIndex = rightIndex = leftIndex;
+          addWaypoint(waypoints, environment, apexX, heights[apexIndex], apexZ);
+          i = apexIndex;
+          continue;
+        }
+      }
+
+      if (getArea(apexX, apexZ, funnelLeftX, funnelLeftZ, leftX[i], leftZ[i]) >= 0) {
+        if ((apexX == funnelLeftX && apexZ == funnelLeftZ)
+            || getArea(apexX, apexZ, funnelRightX, funnelRightZ, leftX[i], leftZ[i]) < 0) {
+          funnelLeftX = leftX[i];
+          funnelLeftZ = leftZ[i];
+          leftIndex = i;
+        } else {
+          apexX = funnelLeftX = funnelRightX;
+          apexZ = funnelLeftZ = funnelRightZ;
+          apexIndex = leftIndex = rightIndex;
+          addWaypoint(waypoints, environment, apexX, heights[apexIndex], apexZ);
+          i = apexIndex;
+        }
+      }
+    }
+
+    addWaypoint(
+        waypoints,
+        environment,
+        targetBlock.getBlockX(),
+        targetBlock.getBlockY(),
+        targetBlock.getBlockZ());
+    return waypoints;
+  }
+
+  /** Adds the block containing the given point, unless the path already ends in it. */
+  private void addWaypoint(
+      List<PathPosition> waypoints, PathEnvironment environment, double x, int y, double z) {
+    PathPosition waypoint = new PathPosition(environment, Math.floor(x), y, Math.floor(z));
+    if (!waypoints.get(waypoints.size() - 1).equals(waypoint)) waypoints.add(waypoint);
+  }
+
+  /**
+   * @return twice the signed area of the triangle, its sign tells which side of the line from the
+   *     first to the second point the third one lies on
+   */
+  private double getArea(double ax, double az, double bx, double bz, double cx, double cz) {
+    return (cx - ax) * (bz - az) - (bx - ax) * (cz - az);
+  }
+
+  private double getDistance(
+      double x, double y, double z, double otherX, double otherY, double otherZ) {
+    double dx = otherX - x;
+    double dy = otherY - y;
+    double dz = otherZ - z;
+    return Math.sqrt(dx * dx + dy * dy + dz * dz);
+  }
+
+  /** A region on the route, entered at the middle of the portal leading into it. */
+  private static final class RegionNode {
+
+    final NavMeshRegion region;
+    final RegionNode parent;
+    final NavMesh.Portal portal;
+    final double x;
+    final double y;
+    final double z;
+    final double cost;
+    final double estimatedCost;
+
+    RegionNode(
+        NavMeshRegion region,
+        RegionNode parent,
+        NavMesh.Portal portal,
+        double x,
+        double y,
+        double z,
+        double cost,
+        double estimatedCost) {
+      this.region = region;
+      this.parent = parent;
+      this.portal = portal;
+      this.x = x;
+      this.y = y;
+      this.z = z;
+      this.cost = cost;
+      this.estimatedCost = estimatedCost;
+    }
+  }
+}
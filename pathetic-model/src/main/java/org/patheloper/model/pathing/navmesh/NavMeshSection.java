@@ -0,0 +1,159 @@
+package org.patheloper.model.pathing.navmesh;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import org.bukkit.Material;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.util.MaterialMask;
+import org.patheloper.api.wrapper.PathEnvironment;
+import org.patheloper.api.wrapper.PathPosition;
+
+/**
+ * The walkable regions of one chunk section. A block is walkable if the block below it is solid
+ * and the entity fits into the passable blocks from it upwards. The walkable blocks of each layer
+ * are merged greedily into rectangles, which are convex, so an entity can walk in a straight line
+ * between any two blocks of the same region.
+ */
+final class NavMeshSection {
+
+  private static final int SECTION_VOLUME = 16 * 16 * 16;
+
+  final int version;
+
+  /** Whether all blocks within the world could be read. */
+  final boolean complete;
+
+  /** The passable blocks of the section. */
+  private final BitSet passable;
+
+  /** The region of each block, as its index in the regions plus one, 0 for unwalkable blocks. */
+  private final short[] regionIds;
+
+  private final NavMeshRegion[] regions;
+
+  private NavMeshSection(
+      int version,
+      boolean complete,
+      BitSet passable,
+      short[] regionIds,
+      NavMeshRegion[] regions) {
+    this.version = version;
+    this.complete = complete;
+    this.passable = passable;
+    this.regionIds = regionIds;
+    this.regions = regions;
+  }
+
+  boolean isPassable(int x, int y, int z) {
+    return passable.get(getIndex(x & 15, y & 15, z & 15));
+  }
+
+  /** @return the region the given block belongs to, or null if it is not walkable */
+  NavMeshRegion getRegion(int x, int y, int z) {
+    int regionId = regionIds[getIndex(x & 15, y & 15, z & 15)];
+    return regionId == 0 ? null : regions[regionId - 1];
+  }
+
+  /**
+   * Reads the section along with the block below it and the blocks above it the entity reaches
+   * into, and merges its walkable blocks into regions.
+   *
+   * @param height the height of the entity in blocks
+   */
+  static NavMeshSection build(
+      SnapshotManager snapshotManager,
+      PathEnvironment environment,
+      long sectionKey,
+      int sectionX,
+      int sectionY,
+      int sectionZ,
+      int height,
+      int version) {
+    // one block below for the ground, and one more above for the head room of steps down
+    int sizeY = 16 + height + 1;
+    int originY = (sectionY << 4) - 1;
+    Material[] materials = new Material[16 * sizeY * 16];
+    snapshotManager.getMaterials(
+        new PathPosition(environment, sectionX << 4, originY, sectionZ << 4),
+        16,
+        sizeY,
+        16,
+        materials);
+
+    boolean complete = true;
+    BitSet passableBox = new BitSet(materials.length);
+    for (int i = 0; i < materials.length; i++) {
+      if (materials[i] == null && isWithinWorld(environment, originY + i / (16 * 16)))
+        complete = false;
+      passableBox.set(i, MaterialMask.PASSABLE.contains(materials[i]));
+    }
+
+    // the box starts one block below the section, so the ground of a block shares its index
+    BitSet walkable = new BitSet(SECTION_VOLUME);
+    for (int y = 0; y < 16; y++)
+      for (int z = 0; z < 16; z++)
+        for (int x = 0; x < 16; x++) {
+          Material ground = materials[getIndex(x, y, z)];
+          if (ground == null || MaterialMask.PASSABLE.contains(ground)) continue;
+
+          boolean fits = true;
+          for (int dy = 1; dy <= height && fits; dy++)
+            fits = passableBox.get(getIndex(x, y + dy, z));
+          walkable.set(getIndex(x, y, z), fits);
+        }
+
+    short[] regionIds = new short[SECTION_VOLUME];
+    List<NavMeshRegion> regions = new ArrayList<>();
+    for (int y = 0; y < 16; y++)
+      for (int z = 0; z < 16; z++)
+        for (int x = 0; x < 16; x++) {
+          if (!walkable.get(getIndex(x, y, z)) || regionIds[getIndex(x, y, z)] != 0) continue;
+
+          int maxX = x;
+          while (maxX < 15 && isFree(walkable, regionIds, maxX + 1, y, z)) maxX++;
+
+          int maxZ = z;
+          while (maxZ < 15 && isRowFree(walkable, regionIds, x, maxX, y, maxZ + 1)) maxZ++;
+
+          short regionId = (short) (regions.size() + 1);
+          for (int rz = z; rz <= maxZ; rz++)
+            for (int rx = x; rx <= maxX; rx++) regionIds[getIndex(rx, y, rz)] = regionId;
+
+          regions.add(
+              new NavMeshRegion(
+                  sectionKey,
+                  regionId,
+                  (sectionX << 4) + x,
+                  (sectionX << 4) + maxX,
+                  (sectionY << 4) + y,
+                  (sectionZ << 4) + z,
+                  (sectionZ << 4) + maxZ));
+        }
+
+    BitSet passable = passableBox.get(16 * 16, 16 * 16 + SECTION_VOLUME);
+    return new NavMeshSection(
+        version, complete, passable, regionIds, regions.toArray(new NavMeshRegion[0]));
+  }
+
+  private static boolean isWithinWorld(PathEnvironment environment, int y) {
+    return environment.getMinHeight() <= y && y < environment.getMaxHeight();
+  }
+
+  private static boolean isFree(BitSet walkable, short[] regionIds, int x, int y, int z) {
+    int index = getIndex(x, y, z);
+    return walkable.get(index) && regionIds[index] == 0;
+  }
+
+  private static boolean isRowFree(
+      BitSet walkable, short[] regionIds, int minX, int maxX, int y, int z) {
+    for (int x = minX; x <= maxX; x++) {
+      if (!isFree(walkable, regionIds, x, y, z)) return false;
+    }
+    return true;
+  }
+
+  private static int getIndex(int x, int y, int z) {
+    return (y << 8) | (z << 4) | x;
+  }
+}
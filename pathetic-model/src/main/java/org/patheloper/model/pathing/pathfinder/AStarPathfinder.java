@@ -1,18 +1,14 @@
 package org.patheloper.model.pathing.pathfinder;
 
 import java.util.*;
-import org.jheaps.tree.FibonacciHeap;
 import org.patheloper.api.pathing.configuration.PathfinderConfiguration;
-import org.patheloper.api.pathing.filter.PathFilter;
-import org.patheloper.api.pathing.filter.PathFilterStage;
-import org.patheloper.api.pathing.filter.PathValidationContext;
+import org.patheloper.api.pathing.configuration.SearchMode;
+import org.patheloper.api.pathing.cost.PathCostProvider;
 import org.patheloper.api.wrapper.PathPosition;
 import org.patheloper.api.wrapper.PathVector;
 import org.patheloper.model.pathing.Node;
 import org.patheloper.model.pathing.Offset;
-import org.patheloper.util.ExpiringHashMap;
 import org.patheloper.util.GridRegionData;
-import org.patheloper.util.Tuple3;
 import org.patheloper.util.WatchdogUtil;
 
 public class AStarPathfinder extends AbstractPathfinder {
@@ -20,38 +16,32 @@ public class AStarPathfinder extends AbstractPathfinder {
   private static final int DEFAULT_GRID_CELL_SIZE = 12;
   private static final int PRIORITY_BOOST_IN_PERCENTAGE = 80;
 
-  /**
-   * The grid map used to store the regional examined positions and Bloom filters for each grid
-   * region.
-   */
-  private final Map<Tuple3<Integer>, ExpiringHashMap.Entry<GridRegionData>> gridMap =
-      new ExpiringHashMap<>();
+  /** The walker finding the neighbours of nodes, or null if not searching surfaces. */
+  private final SurfaceWalker surfaceWalker;
 
   public AStarPathfinder(PathfinderConfiguration pathfinderConfiguration) {
-    super(pathfinderConfiguration);
+    this(pathfinderConfiguration, true);
+  }
+
+  AStarPathfinder(PathfinderConfiguration pathfinderConfiguration, boolean raisingEvents) {
+    super(pathfinderConfiguration, raisingEvents);
+    this.surfaceWalker =
+        pathfinderConfiguration.getSearchMode() != SearchMode.VOXEL
+            ? new SurfaceWalker(pathfinderConfiguration)
+            : null;
   }
 
   @Override
-  protected void tick(
-      PathPosition start,
-      PathPosition target,
-      Node currentNode,
-      Depth depth,
-      FibonacciHeap<Double, Node> nodeQueue,
-      Set<PathPosition> examinedPositions,
-      List<PathFilter> filters,
-      List<PathFilterStage> filterStages) {
-
-    tickWatchdogIfNeeded(depth);
-
-    evaluateNewNodes(
-        nodeQueue,
-        examinedPositions,
-        currentNode,
-        filters,
-        filterStages,
-        this.pathfinderConfiguration.isAllowingDiagonal());
-    depth.increment();
+  protected void tick(SearchContext searchContext, Node currentNode) {
+    tickWatchdogIfNeeded(searchContext.getDepth());
+
+    evaluateNewNodes(searchContext, createNeighbourNodes(currentNode), true);
+    searchContext.getDepth().increment();
+  }
+
+  @Override
+  protected void evaluateResumedNodes(SearchContext searchContext, Collection<Node> resumedNodes) {
+    evaluateNewNodes(searchContext, resumedNodes, false);
   }
 
   private void tickWatchdogIfNeeded(Depth depth) {
@@ -61,59 +51,127 @@ public class AStarPathfinder extends AbstractPathfinder {
   }
 
   private void evaluateNewNodes(
-      FibonacciHeap<Double, Node> nodeQueue,
-      Set<PathPosition> examinedPositions,
-      Node currentNode,
-      List<PathFilter> filters,
-      List<PathFilterStage> filterStages,
-      boolean allowingDiagonal) {
-
-    Collection<Node> newNodes =
-        fetchValidNeighbours(
-            examinedPositions, currentNode, filters, filterStages, allowingDiagonal);
-
+      SearchContext searchContext, Collection<Node> newNodes, boolean allowParking) {
     for (Node newNode : newNodes) {
-      double nodeCost = newNode.getHeuristic().get();
+      if (allowParking && parkIfChunkMissing(searchContext, newNode)) continue;
+
+      searchContext.recordChunkVersions(newNode.getPosition(), margin);
+
+      if (isImpassable(searchContext, newNode)) continue;
+
+      if (pathfinderConfiguration.isValidatingLazily()) {
+        if (!isWorthQueueing(searchContext, newNode)) continue;
+      } else if (!isNodeValid(
+          searchContext,
+          newNode.getParent(),
+          newNode,
+          searchContext.getExaminedPositions(),
+          this.pathfinderConfiguration.isAllowingDiagonal())) continue;
+
+      double nodeCost;
+      if (pathfinderConfiguration.getCostProvider() != null) {
+        newNode.setBlockCost(getBlockCost(searchContext, newNode));
+        nodeCost = newNode.getFCost();
+      } else {
+        nodeCost = newNode.getHeuristic();
+      }
       if (pathfinderConfiguration.isPrioritizing()) {
-        double priorityAdjustment = calculatePriorityAdjustment(newNode, filterStages);
+        double priorityAdjustment = calculatePriorityAdjustment(searchContext, newNode);
         nodeCost -= priorityAdjustment;
       }
-      nodeQueue.insert(nodeCost, newNode);
+      searchContext.getNodeQueue().insert(nodeCost, newNode);
     }
   }
 
-  private double calculatePriorityAdjustment(Node node, List<PathFilterStage> filterStages) {
-    for (PathFilterStage filterStage : filterStages) {
-      boolean filterResult =
-          filterStage.filter(
-              new PathValidationContext(
-                  node.getPosition(),
-                  node.getParent() != null ? node.getParent().getPosition() : null,
-                  snapshotManager));
-
-      if (filterResult) {
-        return node.getHeuristic().get() * (PRIORITY_BOOST_IN_PERCENTAGE / 100.0);
+  /**
+   * When validating lazily, nodes are only validated once they are taken from the queue. The same
+   * position may then be queued several times from different parents, the first copy that turns
+   * out to be valid wins and marks the position as examined.
+   *
+   * <p>With a cost provider, nodes validated eagerly are only marked as examined here as well, so
+   * that a cheaper route found to a position after it has been queued isn't thrown away.
+   */
+  @Override
+  protected boolean isExpandable(SearchContext searchContext, Node node) {
+    if (node.getParent() == null) return true;
+    if (isClosingOnExpansion()) return searchContext.getExaminedPositions().add(node.getPosition());
+    if (!pathfinderConfiguration.isValidatingLazily()) return true;
+
+    return isNodeValid(
+        searchContext,
+        node.getParent(),
+        node,
+        searchContext.getExaminedPositions(),
+        pathfinderConfiguration.isAllowingDiagonal());
+  }
+
+  /** Whether nodes validated on discovery are marked as examined once expanded instead. */
+  private boolean isClosingOnExpansion() {
+    return !pathfinderConfiguration.isValidatingLazily()
+        && pathfinderConfiguration.getCostProvider() != null;
+  }
+
+  /** The cheap checks a node has to pass to be queued at all when validating lazily. */
+  private boolean isWorthQueueing(SearchContext searchContext, Node node) {
+    return isWithinWorldBounds(node.getPosition())
+        && !searchContext.getExaminedPositions().contains(node.getPosition());
+  }
+
+  /** Impassable blocks are sorted out before any filter has to look at them. */
+  private boolean isImpassable(SearchContext searchContext, Node node) {
+    return pathfinderConfiguration.getCostProvider() != null
+        && getBlockCost(searchContext, node) == PathCostProvider.IMPASSABLE;
+  }
+
+  private double getBlockCost(SearchContext searchContext, Node node) {
+    PathPosition position = node.getPosition();
+    return searchContext
+        .getTraversalCosts()
+        .getCost(
+            position.getBlockX(),
+            position.getBlockY(),
+            position.getBlockZ(),
+            position.getPathEnvironment(),
+            pathfinderConfiguration.getCostProvider(),
+            snapshotManager);
+  }
+
+  private double calculatePriorityAdjustment(SearchContext searchContext, Node node) {
+    for (int i = 0; i < searchContext.getFilterStages().size(); i++) {
+      if (passesFilterStage(searchContext, i, node)) {
+        return node.getHeuristic() * (PRIORITY_BOOST_IN_PERCENTAGE / 100.0);
       }
     }
     return 0.0;
   }
 
   private boolean isNodeValid(
+      SearchContext searchContext,
       Node currentNode,
       Node newNode,
       Set<PathPosition> examinedPositions,
-      List<PathFilter> filters,
-      List<PathFilterStage> filterStages,
       boolean allowingDiagonal) {
 
-    if (isNodeInvalid(newNode, filters, filterStages)) return false;
+    if (isNodeInvalid(searchContext, newNode)) return false;
 
-    if (!allowingDiagonal) return examinedPositions.add(newNode.getPosition());
+    // surface moves have checked their corners already
+    if (!allowingDiagonal || surfaceWalker != null)
+      return markExamined(examinedPositions, newNode.getPosition());
 
-    if (!isDiagonalMove(currentNode, newNode)) return examinedPositions.add(newNode.getPosition());
+    if (!isDiagonalMove(currentNode, newNode))
+      return markExamined(examinedPositions, newNode.getPosition());
 
-    return isReachable(currentNode, newNode, filters, filterStages)
-        && examinedPositions.add(newNode.getPosition());
+    return isReachable(searchContext, currentNode, newNode)
+        && markExamined(examinedPositions, newNode.getPosition());
+  }
+
+  /**
+   * @return whether the position has not been examined yet, it is only marked as examined right
+   *     away if not closing on expansion, see {@link #isExpandable}
+   */
+  private boolean markExamined(Set<PathPosition> examinedPositions, PathPosition position) {
+    if (isClosingOnExpansion()) return !examinedPositions.contains(position);
+    return examinedPositions.add(position);
   }
 
   private boolean isDiagonalMove(Node from, Node to) {
@@ -127,8 +185,7 @@ public class AStarPathfinder extends AbstractPathfinder {
    * Returns whether the diagonal jump is possible by checking if the adjacent nodes are passable or
    * not. With adjacent nodes are the shared overlapping neighbours meant.
    */
-  private boolean isReachable(
-      Node from, Node to, List<PathFilter> filters, List<PathFilterStage> filterStages) {
+  private boolean isReachable(SearchContext searchContext, Node from, Node to) {
     boolean hasYDifference = from.getPosition().getBlockY() != to.getPosition().getBlockY();
     PathVector[] offsets = Offset.VERTICAL_AND_HORIZONTAL.getVectors();
 
@@ -147,11 +204,11 @@ public class AStarPathfinder extends AbstractPathfinder {
            *  depending on the Y difference
            */
           boolean heightDifferencePassable =
-              isHeightDifferencePassable(from, to, vector1, hasYDifference);
+              isHeightDifferencePassable(searchContext, from, to, vector1, hasYDifference);
 
-          if (doAllFiltersPass(filters, neighbour1)
+          if (doAllFiltersPass(searchContext, neighbour1)
               && (!pathfinderConfiguration.isPrioritizing()
-                  && doAnyFilterStagePass(filterStages, neighbour1))
+                  && doAnyFilterStagePass(searchContext, neighbour1))
               && heightDifferencePassable) return true;
         }
       }
@@ -161,42 +218,54 @@ public class AStarPathfinder extends AbstractPathfinder {
   }
 
   private boolean isHeightDifferencePassable(
-      Node from, Node to, PathVector vector1, boolean hasHeightDifference) {
+      SearchContext searchContext,
+      Node from,
+      Node to,
+      PathVector vector1,
+      boolean hasHeightDifference) {
     if (!hasHeightDifference) return true;
 
     int yDifference = from.getPosition().getBlockY() - to.getPosition().getBlockY();
-    Node neighbour3 = createNeighbourNode(from, vector1.add(new PathVector(0, yDifference, 0)));
-
-    return snapshotManager.getBlock(neighbour3.getPosition()).isPassable();
+    return searchContext.isPassableAround(
+        from, (int) vector1.getX(), yDifference, (int) vector1.getZ(), snapshotManager);
   }
 
-  private Collection<Node> fetchValidNeighbours(
-      Set<PathPosition> examinedPositions,
-      Node currentNode,
-      List<PathFilter> filters,
-      List<PathFilterStage> filterStages,
-      boolean allowingDiagonal) {
-    Set<Node> newNodes = new HashSet<>(offset.getVectors().length);
+  private Collection<Node> createNeighbourNodes(Node currentNode) {
+    if (surfaceWalker != null) return createSurfaceNeighbourNodes(currentNode);
 
-    for (PathVector vector : offset.getVectors()) {
-      Node newNode = createNeighbourNode(currentNode, vector);
+    PathVector[] vectors = offset.getVectors();
+    List<Node> newNodes = new ArrayList<>(vectors.length);
 
-      if (isNodeValid(
-          currentNode, newNode, examinedPositions, filters, filterStages, allowingDiagonal)) {
-        newNodes.add(newNode);
-      }
+    for (PathVector vector : vectors) {
+      newNodes.add(createNeighbourNode(currentNode, vector));
+    }
+
+    return newNodes;
+  }
+
+  private Collection<Node> createSurfaceNeighbourNodes(Node currentNode) {
+    List<PathPosition> positions =
+        surfaceWalker.getNeighbours(currentNode.getPosition(), snapshotManager);
+    List<Node> newNodes = new ArrayList<>(positions.size());
+
+    for (PathPosition position : positions) {
+      newNodes.add(createNeighbourNode(currentNode, position));
     }
 
     return newNodes;
   }
 
   private Node createNeighbourNode(Node currentNode, PathVector offset) {
+    return createNeighbourNode(currentNode, currentNode.getPosition().add(offset));
+  }
+
+  private Node createNeighbourNode(Node currentNode, PathPosition position) {
     Node newNode =
         new Node(
-            currentNode.getPosition().add(offset),
+            position,
             currentNode.getStart(),
             currentNode.getTarget(),
-            pathfinderConfiguration.getHeuristicWeights(),
+            currentNode.getEstimator(),
             currentNode.getDepth() + 1);
     newNode.setParent(currentNode);
     return newNode;
@@ -206,19 +275,13 @@ public class AStarPathfinder extends AbstractPathfinder {
    * Checks if the node is invalid. A node is invalid if it is outside the world bounds or is not
    * valid according to the filters.
    */
-  private boolean isNodeInvalid(
-      Node node, List<PathFilter> filters, List<PathFilterStage> filterStages) {
+  private boolean isNodeInvalid(SearchContext searchContext, Node node) {
 
     int gridX = node.getPosition().getBlockX() / DEFAULT_GRID_CELL_SIZE;
     int gridY = node.getPosition().getBlockY() / DEFAULT_GRID_CELL_SIZE;
     int gridZ = node.getPosition().getBlockZ() / DEFAULT_GRID_CELL_SIZE;
 
-    GridRegionData regionData =
-        gridMap
-            .computeIfAbsent(
-                new Tuple3<>(gridX, gridY, gridZ),
-                k -> new ExpiringHashMap.Entry<>(new GridRegionData()))
-            .getValue();
+    GridRegionData regionData = searchContext.getGridRegion(gridX, gridY, gridZ);
 
     regionData.getRegionalExaminedPositions().add(node.getPosition());
 
@@ -232,8 +295,17 @@ public class AStarPathfinder extends AbstractPathfinder {
       return true; // Node is invalid if out of bounds
     }
 
-    boolean filtersPass = doAllFiltersPass(filters, node);
-    boolean stagesPass = doAnyFilterStagePass(filterStages, node);
+    if (isSizedEntity()
+        && !searchContext.fitsEntity(
+            node,
+            pathfinderConfiguration.getEntityWidth(),
+            pathfinderConfiguration.getEntityHeight(),
+            snapshotManager)) {
+      return true; // Node is invalid if the entity doesn't fit
+    }
+
+    boolean filtersPass = doAllFiltersPass(searchContext, node);
+    boolean stagesPass = doAnyFilterStagePass(searchContext, node);
 
     if (!filtersPass) {
       return true; // Node is invalid if filters fail
@@ -242,36 +314,91 @@ public class AStarPathfinder extends AbstractPathfinder {
     return !pathfinderConfiguration.isPrioritizing() && !stagesPass;
   }
 
-  private boolean doAllFiltersPass(List<PathFilter> filters, Node node) {
-    for (PathFilter filter : filters) {
-      PathValidationContext context =
-          new PathValidationContext(
-              node.getPosition(),
-              node.getParent() != null ? node.getParent().getPosition() : null,
-              snapshotManager);
-
-      if (!filter.filter(context)) {
+  private boolean doAllFiltersPass(SearchContext searchContext, Node node) {
+    for (int filterIndex : searchContext.getFilterPipeline().getOrder()) {
+      if (!passesFilter(searchContext, filterIndex, node)) {
         return false;
       }
     }
     return true;
   }
 
-  private boolean doAnyFilterStagePass(List<PathFilterStage> filterStages, Node node) {
-    if (filterStages.isEmpty()) return true;
+  private boolean doAnyFilterStagePass(SearchContext searchContext, Node node) {
+    if (searchContext.getFilterStages().isEmpty()) return true;
 
-    for (PathFilterStage filterStage : filterStages) {
-      if (filterStage.filter(
-          new PathValidationContext(
-              node.getPosition(),
-              node.getParent() != null ? node.getParent().getPosition() : null,
-              snapshotManager))) {
+    for (int i = 0; i < searchContext.getFilterStages().size(); i++) {
+      if (passesFilterStage(searchContext, i, node)) {
         return true;
       }
     }
     return false;
   }
 
+  /** Runs the filter at the given index, or reuses its verdict if it already judged the node. */
+  private boolean passesFilter(SearchContext searchContext, int filterIndex, Node node) {
+    PathPosition position = node.getPosition();
+    int x = position.getBlockX();
+    int y = position.getBlockY();
+    int z = position.getBlockZ();
+
+    FilterVerdictCache verdictCache = searchContext.getVerdictCache();
+    int verdict = verdictCache.getFilterVerdict(filterIndex, x, y, z);
+    if (verdict != FilterVerdictCache.UNKNOWN) return verdict == FilterVerdictCache.PASSED;
+
+    int version = verdictCache.getFilterVersion(filterIndex, x, z);
+    PathPosition parent = node.getParent() != null ? node.getParent().getPosition() : position;
+    boolean passed =
+        searchContext
+            .getFilterPipeline()
+            .evaluate(
+                filterIndex,
+                x,
+                y,
+                z,
+                parent.getBlockX(),
+                parent.getBlockY(),
+                parent.getBlockZ(),
+                position.getPathEnvironment(),
+                snapshotManager);
+    verdictCache.putFilterVerdict(filterIndex, x, y, z, version, passed);
+    return passed;
+  }
+
+  /** Runs the filter stage at the given index, or reuses its verdict like {@link #passesFilter}. */
+  private boolean passesFilterStage(SearchContext searchContext, int stageIndex, Node node) {
+    PathPosition position = node.getPosition();
+    int x = position.getBlockX();
+    int y = position.getBlockY();
+    int z = position.getBlockZ();
+
+    FilterVerdictCache verdictCache = searchContext.getVerdictCache();
+    int verdict = verdictCache.getStageVerdict(stageIndex, x, y, z);
+    if (verdict != FilterVerdictCache.UNKNOWN) return verdict == FilterVerdictCache.PASSED;
+
+    int version = verdictCache.getStageVersion(stageIndex, x, z);
+    PathPosition parent = node.getParent() != null ? node.getParent().getPosition() : position;
+    boolean passed =
+        searchContext
+            .getStagePipelines()
+            .get(stageIndex)
+            .evaluateAll(
+                x,
+                y,
+                z,
+                parent.getBlockX(),
+                parent.getBlockY(),
+                parent.getBlockZ(),
+                position.getPathEnvironment(),
+                snapshotManager);
+    verdictCache.putStageVerdict(stageIndex, x, y, z, version, passed);
+    return passed;
+  }
+
+  private boolean isSizedEntity() {
+    return pathfinderConfiguration.getEntityWidth() > 1
+        || pathfinderConfiguration.getEntityHeight() > 1;
+  }
+
   private boolean isWithinWorldBounds(PathPosition position) {
     return position.getPathEnvironment().getMinHeight() < position.getBlockY()
         && position.getBlockY() < position.getPathEnvironment().getMaxHeight();
@@ -5,6 +5,8 @@ import java.util.concurrent.*;
 
 import javax.annotation.Nullable;
 
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
 import org.jheaps.tree.FibonacciHeap;
 import org.patheloper.Pathetic;
 import org.patheloper.api.event.EventPublisher;
@@ -12,20 +14,29 @@ import org.patheloper.api.event.PathingFinishedEvent;
 import org.patheloper.api.event.PathingStartFindEvent;
 import org.patheloper.api.pathing.Pathfinder;
 import org.patheloper.api.pathing.configuration.PathfinderConfiguration;
+import org.patheloper.api.pathing.configuration.SearchMode;
 import org.patheloper.api.pathing.filter.PathFilter;
 import org.patheloper.api.pathing.filter.PathFilterStage;
+import org.patheloper.api.pathing.filter.filters.PassablePathFilter;
+import org.patheloper.api.pathing.heuristic.Heuristic;
 import org.patheloper.api.pathing.result.Path;
 import org.patheloper.api.pathing.result.PathState;
 import org.patheloper.api.pathing.result.PathfinderResult;
 import org.patheloper.api.snapshot.SnapshotManager;
-import org.patheloper.api.wrapper.PathBlock;
 import org.patheloper.api.wrapper.PathPosition;
 import org.patheloper.api.wrapper.PathVector;
 import org.patheloper.model.pathing.Node;
 import org.patheloper.model.pathing.Offset;
+import org.patheloper.model.pathing.navmesh.NavMesh;
+import org.patheloper.model.pathing.navmesh.NavMeshRouter;
 import org.patheloper.model.pathing.result.PathImpl;
 import org.patheloper.model.pathing.result.PathfinderResultImpl;
+import org.patheloper.model.snapshot.ChunkPrefetcher;
 import org.patheloper.model.snapshot.FailingSnapshotManager;
+import org.patheloper.model.snapshot.NavigationCacheSnapshotManager;
+import org.patheloper.model.snapshot.ReachabilityIndex;
+import org.patheloper.model.snapshot.RegionFileSnapshotManager;
+import org.patheloper.util.ChunkUtils;
 import org.patheloper.util.ErrorLogger;
 
 import lombok.NonNull;
@@ -48,9 +59,16 @@ abstract class AbstractPathfinder implements Pathfinder {
   private static final SnapshotManager SIMPLE_SNAPSHOT_MANAGER = new FailingSnapshotManager();
   private static final SnapshotManager LOADING_SNAPSHOT_MANAGER =
     new FailingSnapshotManager.RequestingSnapshotManager();
+  private static final SnapshotManager REGION_FILE_SNAPSHOT_MANAGER =
+    new RegionFileSnapshotManager(null);
+  private static final SnapshotManager LOADING_REGION_FILE_SNAPSHOT_MANAGER =
+    new RegionFileSnapshotManager(LOADING_SNAPSHOT_MANAGER);
 
   private static final ExecutorService PATHING_EXECUTOR = Executors.newWorkStealingPool();
 
+  /** The maximum amount of idle search contexts kept per pathfinder. */
+  private static final int MAX_POOLED_CONTEXTS = 16;
+
   static {
     Pathetic.addShutdownListener(PATHING_EXECUTOR::shutdown);
   }
@@ -58,13 +76,65 @@ abstract class AbstractPathfinder implements Pathfinder {
   protected final PathfinderConfiguration pathfinderConfiguration;
   protected final Offset offset;
   protected final SnapshotManager snapshotManager;
+  protected final Heuristic heuristic;
+
+  /** How far around a position searches read blocks, see {@link ExhaustedRegionCache#getMargin}. */
+  protected final int margin;
+
+  /** The paths found recently, or null if results are not cached. */
+  @Nullable private final PathResultCache resultCache;
+
+  /** Idle search contexts, cleared and ready to be reused by the next search. */
+  private final Queue<SearchContext> contextPool = new ConcurrentLinkedQueue<>();
+
+  /** The contexts of all searches currently running, so that they can be aborted. */
+  private final Set<SearchContext> activeSearches = ConcurrentHashMap.newKeySet();
+
+  /** Whether searches raise the pathing events, see {@link EventPublisher}. */
+  private final boolean raisingEvents;
 
-  private volatile boolean aborted;
+  /** The pathfinder connecting requests to nearby cached paths, or null if they are not reused. */
+  @Nullable private final AbstractPathfinder localPathfinder;
 
   protected AbstractPathfinder(PathfinderConfiguration pathfinderConfiguration) {
+    this(pathfinderConfiguration, true);
+  }
+
+  protected AbstractPathfinder(
+    PathfinderConfiguration pathfinderConfiguration, boolean raisingEvents) {
     this.pathfinderConfiguration = pathfinderConfiguration;
     this.offset = determineOffset(pathfinderConfiguration);
     this.snapshotManager = determineSnapshotManager(pathfinderConfiguration);
+    this.heuristic = pathfinderConfiguration.getEffectiveHeuristic();
+    this.margin = ExhaustedRegionCache.getMargin(pathfinderConfiguration);
+    this.resultCache =
+      pathfinderConfiguration.getResultCacheSize() > 0
+        ? new PathResultCache(pathfinderConfiguration.getResultCacheSize(), margin)
+        : null;
+    this.raisingEvents = raisingEvents;
+    this.localPathfinder =
+      resultCache != null && pathfinderConfiguration.getResultReuseDistance() > 0
+        ? createLocalPathfinder(pathfinderConfiguration)
+        : null;
+  }
+
+  /**
+   * The local searches are part of the request they splice a path for, so they don't raise events
+   * of their own. They are limited to as many iterations as there are blocks within the reuse
+   * distance around their ends.
+   */
+  private static AbstractPathfinder createLocalPathfinder(
+    PathfinderConfiguration pathfinderConfiguration) {
+    int width = 2 * pathfinderConfiguration.getResultReuseDistance() + 1;
+    return new AStarPathfinder(
+      PathfinderConfiguration.deepCopy(pathfinderConfiguration)
+        .withAsync(false)
+        .withResultCacheSize(0)
+        .withMaxIterations(width * width * width)
+        .withMaxLength(0)
+        .withAllowingFallback(false)
+        .withCounterCheck(false),
+      false);
   }
 
   private Offset determineOffset(PathfinderConfiguration pathfinderConfiguration) {
@@ -75,6 +145,19 @@ abstract class AbstractPathfinder implements Pathfinder {
 
   private SnapshotManager determineSnapshotManager(
     PathfinderConfiguration pathfinderConfiguration) {
+    SnapshotManager snapshotManager = determineWorldSnapshotManager(pathfinderConfiguration);
+    return pathfinderConfiguration.isUsingNavigationCache()
+      ? new NavigationCacheSnapshotManager(snapshotManager)
+      : snapshotManager;
+  }
+
+  private SnapshotManager determineWorldSnapshotManager(
+    PathfinderConfiguration pathfinderConfiguration) {
+    if (pathfinderConfiguration.isReadingRegionFiles())
+      return pathfinderConfiguration.isLoadingChunks()
+        ? LOADING_REGION_FILE_SNAPSHOT_MANAGER
+        : REGION_FILE_SNAPSHOT_MANAGER;
+
     return pathfinderConfiguration.isLoadingChunks()
       ? LOADING_SNAPSHOT_MANAGER
       : SIMPLE_SNAPSHOT_MANAGER;
@@ -99,28 +182,252 @@ abstract class AbstractPathfinder implements Pathfinder {
 
     raiseStartEvent(start, target, sharedFilters, filterStages);
 
-    if (shouldSkipPathing(start, target)) {
+    if (shouldSkipPathing(start, target, sharedFilters, filterStages)) {
       return CompletableFuture.completedFuture(
         finishPathing(
           new PathfinderResultImpl(
             PathState.INITIALLY_FAILED, new PathImpl(start, target, EMPTY_LINKED_HASHSET))));
     }
 
-    return initiatePathing(start, target, sharedFilters, filterStages);
+    if (isRoutingOverNavMesh(sharedFilters, filterStages))
+      return initiateNavMeshPathing(start, target);
+
+    return initiateBlockPathing(start, target, sharedFilters, filterStages);
+  }
+
+  private CompletionStage<PathfinderResult> initiateBlockPathing(
+    PathPosition start,
+    PathPosition target,
+    List<PathFilter> filters,
+    List<PathFilterStage> filterStages) {
+    return resultCache != null
+      ? reuseOrInitiatePathing(start, target, filters, filterStages)
+      : initiatePathing(start, target, filters, filterStages);
   }
 
   /**
-   * Give the pathfinder the final shot
+   * The navigation mesh only knows which blocks are walkable, so requests with filters or costs
+   * are searched block by block. Regions are as narrow as a single block, so wider entities are
+   * searched block by block as well.
+   */
+  private boolean isRoutingOverNavMesh(
+    List<PathFilter> filters, List<PathFilterStage> filterStages) {
+    return pathfinderConfiguration.getSearchMode() == SearchMode.NAVMESH
+           && filters.isEmpty()
+           && filterStages.isEmpty()
+           && pathfinderConfiguration.getCostProvider() == null
+           && pathfinderConfiguration.getEntityWidth() <= 1;
+  }
+
+  private CompletionStage<PathfinderResult> initiateNavMeshPathing(
+    PathPosition start, PathPosition target) {
+    return pathfinderConfiguration.isAsync()
+      ? CompletableFuture.supplyAsync(
+        () -> routeOrInitiatePathing(start, target), PATHING_EXECUTOR)
+      .thenCompose(pathfinderResult -> pathfinderResult)
+      .exceptionally(throwable -> handleException(start, target, throwable))
+      : routeOrInitiatePathing(start, target);
+  }
+
+  /**
+   * Routes over the navigation mesh. If start or target are not walkable, or the mesh has no route
+   * between them, e.g. because it would take a jump, the path is searched block by block instead.
+   * The same goes for routes longer than the maximum length, so that the block search ends up with
+   * the partial path. The maximum iterations limit the regions expanded on the mesh.
+   */
+  private CompletionStage<PathfinderResult> routeOrInitiatePathing(
+    PathPosition start, PathPosition target) {
+    PathPosition startBlock = start.floor();
+    PathPosition targetBlock = target.floor();
+
+    NavMesh navMesh =
+      new NavMesh(
+        snapshotManager,
+        start.getPathEnvironment(),
+        pathfinderConfiguration.getEntityHeight(),
+        pathfinderConfiguration.getMaxStepUp(),
+        pathfinderConfiguration.getMaxDrop());
+    Optional<List<PathPosition>> waypoints =
+      NavMeshRouter.findWaypoints(
+        navMesh,
+        startBlock,
+        targetBlock,
+        pathfinderConfiguration.getMaxIterations(),
+        pathfinderConfiguration.getEntityWidth());
+    if (!waypoints.isPresent() || exceedsLengthLimit(countSteps(waypoints.get())))
+      return initiateBlockPathing(
+        start, target, Collections.emptyList(), Collections.emptyList());
+
+    return CompletableFuture.completedFuture(finishPathing(
+      new PathfinderResultImpl(
+        PathState.FOUND, new PathImpl(startBlock, targetBlock, waypoints.get()))));
+  }
+
+  /**
+   * Answers the request from the {@link PathResultCache} if it holds a path between the same
+   * blocks. Otherwise a cached path close enough to the request is spliced onto it, and if there is
+   * none, the path is searched as usual.
+   */
+  private CompletionStage<PathfinderResult> reuseOrInitiatePathing(
+    PathPosition start,
+    PathPosition target,
+    List<PathFilter> filters,
+    List<PathFilterStage> filterStages) {
+    Object signature =
+      ExhaustedRegionCache.getSignature(pathfinderConfiguration, filters, filterStages);
+    if (signature == null) return initiatePathing(start, target, filters, filterStages);
+
+    PathPosition startBlock = start.floor();
+    PathPosition targetBlock = target.floor();
+    List<PathPosition> cachedPath = resultCache.getPath(signature, startBlock, targetBlock);
+    if (cachedPath != null)
+      return CompletableFuture.completedFuture(finishPathing(
+        new PathfinderResultImpl(
+          PathState.FOUND, new PathImpl(startBlock, targetBlock, cachedPath))));
+
+    int reuseDistance = pathfinderConfiguration.getResultReuseDistance();
+    PathResultCache.CachedPath nearbyPath =
+      reuseDistance > 0
+        ? resultCache.findNearbyPath(signature, startBlock, targetBlock, reuseDistance)
+        : null;
+    if (nearbyPath == null) return initiatePathing(start, target, filters, filterStages);
+
+    return pathfinderConfiguration.isAsync()
+      ? CompletableFuture.supplyAsync(
+        () -> spliceOrInitiatePathing(nearbyPath, start, target, filters, filterStages),
+        PATHING_EXECUTOR)
+      .thenCompose(pathfinderResult -> pathfinderResult)
+      .exceptionally(throwable -> handleException(start, target, throwable))
+      : spliceOrInitiatePathing(nearbyPath, start, target, filters, filterStages);
+  }
+
+  private CompletionStage<PathfinderResult> spliceOrInitiatePathing(
+    PathResultCache.CachedPath nearbyPath,
+    PathPosition start,
+    PathPosition target,
+    List<PathFilter> filters,
+    List<PathFilterStage> filterStages) {
+    PathPosition startBlock = start.floor();
+    PathPosition targetBlock = target.floor();
+
+    Optional<List<PathPosition>> splicedPath =
+      splicePath(nearbyPath.getPositions(), startBlock, targetBlock, filters, filterStages);
+    if (!splicedPath.isPresent() || exceedsLengthLimit(splicedPath.get()))
+      return initiatePathing(start, target, filters, filterStages);
+
+    return CompletableFuture.completedFuture(finishPathing(
+      new PathfinderResultImpl(
+        PathState.FOUND, new PathImpl(startBlock, targetBlock, splicedPath.get()))));
+  }
+
+  /**
+   * Bends the cached path to the given start and target. Ends which lie on the path itself cut it
+   * short, any other end is connected to the path by a short search.
+   *
+   * @return the spliced path, or empty if an end couldn't be connected
+   */
+  private Optional<List<PathPosition>> splicePath(
+    List<PathPosition> cachedPath,
+    PathPosition startBlock,
+    PathPosition targetBlock,
+    List<PathFilter> filters,
+    List<PathFilterStage> filterStages) {
+    List<PathPosition> path = new ArrayList<>();
+
+    int from = cachedPath.indexOf(startBlock);
+    if (from < 0) {
+      Optional<List<PathPosition>> head =
+        findLocalPath(startBlock, cachedPath.get(0), filters, filterStages);
+      if (!head.isPresent()) return Optional.empty();
+
+      path.addAll(head.get().subList(0, head.get().size() - 1));
+      from = 0;
+    }
+
+    int to = cachedPath.subList(from, cachedPath.size()).lastIndexOf(targetBlock);
+    if (to >= 0) {
+      path.addAll(cachedPath.subList(from, from + to + 1));
+      return Optional.of(path);
+    }
+
+    path.addAll(cachedPath.subList(from, cachedPath.size()));
+    Optional<List<PathPosition>> tail =
+      findLocalPath(cachedPath.get(cachedPath.size() - 1), targetBlock, filters, filterStages);
+    if (!tail.isPresent()) return Optional.empty();
+
+    path.addAll(tail.get().subList(1, tail.get().size()));
+    return Optional.of(path);
+  }
+
+  private boolean exceedsLengthLimit(List<PathPosition> path) {
+    return exceedsLengthLimit(path.size() - 1);
+  }
+
+  private boolean exceedsLengthLimit(int steps) {
+    return pathfinderConfiguration.getMaxLength() != 0
+           && steps > pathfinderConfiguration.getMaxLength();
+  }
+
+  /**
+   * @return the amount of steps along the given waypoints. Steps may go diagonally, so the straight
+   *     line between two waypoints takes as many steps as its longest axis.
+   */
+  private static int countSteps(List<PathPosition> waypoints) {
+    int steps = 0;
+    for (int i = 1; i < waypoints.size(); i++) {
+      PathPosition from = waypoints.get(i - 1);
+      PathPosition to = waypoints.get(i);
+      steps +=
+        Math.max(
+          Math.abs(to.getBlockX() - from.getBlockX()),
+          Math.max(
+            Math.abs(to.getBlockY() - from.getBlockY()),
+            Math.abs(to.getBlockZ() - from.getBlockZ())));
+    }
+    return steps;
+  }
+
+  /**
+   * Runs a synchronous search between two nearby blocks, see {@link #createLocalPathfinder}.
+   *
+   * @return the positions of the path, or empty if none has been found
+   */
+  private Optional<List<PathPosition>> findLocalPath(
+    PathPosition start,
+    PathPosition target,
+    List<PathFilter> filters,
+    List<PathFilterStage> filterStages) {
+    PathfinderResult pathfinderResult =
+      localPathfinder
+        .findPath(start, target, filters, filterStages)
+        .toCompletableFuture()
+        .join();
+    if (pathfinderResult.getPathState() != PathState.FOUND) return Optional.empty();
+
+    List<PathPosition> positions = new ArrayList<>();
+    pathfinderResult.getPath().forEach(positions::add);
+    return Optional.of(positions);
+  }
+
+  /**
+   * Give the pathfinder the final shot. Aborts all searches of this pathfinder which are currently
+   * running.
    */
   @Override
   public void abort() {
-    this.aborted = true;
+    activeSearches.forEach(SearchContext::abort);
+    if (localPathfinder != null) localPathfinder.abort();
   }
 
-  private boolean shouldSkipPathing(PathPosition start, PathPosition target) {
+  private boolean shouldSkipPathing(
+    PathPosition start,
+    PathPosition target,
+    List<PathFilter> filters,
+    List<PathFilterStage> filterStages) {
     return !isSameEnvironment(start, target)
            || isSameBlock(start, target)
-           || isFastFailEnabledAndBlockUnreachable(start, target);
+           || isFastFailEnabledAndBlockUnreachable(start, target)
+           || isFastFailEnabledAndRegionExhausted(start, target, filters, filterStages);
   }
 
   private boolean isSameEnvironment(PathPosition start, PathPosition target) {
@@ -136,11 +443,66 @@ abstract class AbstractPathfinder implements Pathfinder {
            && (isBlockUnreachable(target) || isBlockUnreachable(start));
   }
 
+  /**
+   * Checks whether an earlier search with the same rules has already explored everything reachable
+   * from the start, without finding the target.
+   */
+  private boolean isFastFailEnabledAndRegionExhausted(
+    PathPosition start,
+    PathPosition target,
+    List<PathFilter> filters,
+    List<PathFilterStage> filterStages) {
+    if (!this.pathfinderConfiguration.isAllowingFailFast()) return false;
+
+    Object signature =
+      ExhaustedRegionCache.getSignature(pathfinderConfiguration, filters, filterStages);
+    return signature != null
+           && ExhaustedRegionCache.isExhausted(signature, start.floor(), target.floor());
+  }
+
+  /**
+   * Checks whether start and target lie in separate components of passable blocks. Only searches
+   * bound to passable blocks, i.e. surface searches and voxel searches with a {@link
+   * PassablePathFilter}, may be rejected that way, otherwise the filters decide what can be walked
+   * through. Runs as part of the search, so that async pathfinders don't block the caller on it.
+   */
+  private boolean isFastFailEnabledAndComponentUnreachable(SearchContext searchContext) {
+    return this.pathfinderConfiguration.isAllowingFailFast()
+           && isBoundToPassableBlocks(searchContext)
+           && ReachabilityIndex.isProvenUnreachable(
+             determineNonLoadingSnapshotManager(),
+             searchContext.getStart(),
+             searchContext.getTarget());
+  }
+
+  private boolean isBoundToPassableBlocks(SearchContext searchContext) {
+    if (pathfinderConfiguration.getSearchMode() != SearchMode.VOXEL) return true;
+
+    for (PathFilter filter : searchContext.getFilters())
+      if (filter.getClass() == PassablePathFilter.class) return true;
+    return false;
+  }
+
+  /**
+   * The reachability checks may have to read a lot of sections around start and target, and may
+   * run on the main thread, so they never load chunks. Sections which are not available simply
+   * count as reachable.
+   */
+  private SnapshotManager determineNonLoadingSnapshotManager() {
+    return pathfinderConfiguration.isReadingRegionFiles()
+      ? REGION_FILE_SNAPSHOT_MANAGER
+      : SIMPLE_SNAPSHOT_MANAGER;
+  }
+
   private boolean isBlockUnreachable(PathPosition position) {
+    BitSet neighbourhood = new BitSet(SnapshotManager.NEIGHBOURHOOD_VOLUME);
+    this.snapshotManager.getNeighbourhood(position, neighbourhood);
+
     for (PathVector vector : offset.getVectors()) {
-      PathPosition offsetPosition = position.add(vector);
-      PathBlock pathBlock = this.snapshotManager.getBlock(offsetPosition);
-      if (pathBlock != null && pathBlock.isPassable()) {
+      int index =
+        SnapshotManager.getNeighbourhoodIndex(
+          (int) vector.getX(), (int) vector.getY(), (int) vector.getZ());
+      if (neighbourhood.get(index)) {
         return false;
       }
     }
@@ -152,85 +514,227 @@ abstract class AbstractPathfinder implements Pathfinder {
     PathPosition target,
     List<PathFilter> filters,
     List<PathFilterStage> filterStages) {
+    if (isLoadingChunksAhead()) {
+      ChunkPrefetcher.prefetchCorridor(start, target);
+    }
+
+    SearchContext searchContext = acquireSearchContext(start, target, filters, filterStages);
+
     return pathfinderConfiguration.isAsync()
       ? CompletableFuture.supplyAsync(
-        () -> executePathingAndCleanupFilters(start, target, filters, filterStages),
-        PATHING_EXECUTOR)
+        () -> executePathingAndCleanupFilters(searchContext), PATHING_EXECUTOR)
+      .thenCompose(pathfinderResult -> pathfinderResult)
       .thenApply(this::finishPathing)
       .exceptionally(throwable -> handleException(start, target, throwable))
-      : initiateSyncPathing(start, target, filters, filterStages);
+      : initiateSyncPathing(searchContext);
   }
 
-  private PathfinderResult executePathing(
-    PathPosition start,
-    PathPosition target,
-    List<PathFilter> filters,
-    List<PathFilterStage> filterStages) {
+  /**
+   * Runs the search until it either finishes or has to wait for chunks to load. In the latter case
+   * an async search frees its thread and is resumed from its {@link SearchContext} once a chunk has
+   * been loaded, while a sync search simply waits for it.
+   */
+  private CompletionStage<PathfinderResult> executePathing(SearchContext searchContext) {
     try {
-      Node startNode = createStartNode(start, target);
-      FibonacciHeap<Double, Node> nodeQueue = new FibonacciHeap<>();
-      nodeQueue.insert(startNode.getFCost(), startNode);
+      FibonacciHeap<Double, Node> nodeQueue = searchContext.getNodeQueue();
+      Depth depth = searchContext.getDepth();
+
+      while (depth.getDepth() <= pathfinderConfiguration.getMaxIterations()) {
+        if (searchContext.isAborted()) {
+          return CompletableFuture.completedFuture(
+            finishPathing(PathState.ABORTED, searchContext.getFallbackNode()));
+        }
 
-      Set<PathPosition> examinedPositions = new HashSet<>();
-      Depth depth = new Depth(1);
-      Node fallbackNode = startNode;
+        resumeParkedNodes(searchContext);
 
-      while (!nodeQueue.isEmpty()
-             && depth.getDepth() <= pathfinderConfiguration.getMaxIterations()) {
+        if (nodeQueue.isEmpty()) {
+          if (!searchContext.hasParkedNodes()) break;
 
-        if (isAborted()) {
-          return finishPathing(PathState.ABORTED, fallbackNode);
+          if (!pathfinderConfiguration.isAsync()) {
+            searchContext.awaitParkedChunks().join();
+            continue;
+          }
+
+          return searchContext
+            .awaitParkedChunks()
+            .thenComposeAsync(ignored -> executePathing(searchContext), PATHING_EXECUTOR);
         }
 
         Node currentNode = nodeQueue.deleteMin().getValue();
-        fallbackNode = currentNode;
+        if (!isExpandable(searchContext, currentNode)) continue;
+
+        searchContext.setFallbackNode(currentNode);
+
+        prefetchAheadIfNeeded(currentNode);
 
         if (hasReachedLengthLimit(currentNode)) {
-          return finishPathing(PathState.LENGTH_LIMITED, currentNode);
+          return CompletableFuture.completedFuture(
+            finishPathing(PathState.LENGTH_LIMITED, currentNode));
         }
 
         if (currentNode.isTarget()) {
-          return finishPathing(PathState.FOUND, currentNode);
+          rememberFoundPath(searchContext, currentNode);
+          return CompletableFuture.completedFuture(finishPathing(PathState.FOUND, currentNode));
         }
 
-        tick(
-          start, target, currentNode, depth, nodeQueue, examinedPositions, filters, filterStages);
+        tick(searchContext, currentNode);
       }
 
-      aborted = false;
+      if (depth.getDepth() <= pathfinderConfiguration.getMaxIterations())
+        rememberExhaustedRegion(searchContext);
 
-      return backupPathfindingOrFailure(depth, start, target, filters, fallbackNode);
+      return CompletableFuture.completedFuture(
+        backupPathfindingOrFailure(
+          depth,
+          searchContext.getStart(),
+          searchContext.getTarget(),
+          searchContext.getFilters(),
+          searchContext.getFallbackNode()));
     } catch (Exception e) {
       throw ErrorLogger.logFatalErrorWithStacktrace("Failed to find path", e);
     }
   }
 
-  private boolean isAborted() {
-    return aborted;
+  /**
+   * The search has run out of nodes, so everything it examined is all that is reachable from its
+   * start. Later searches starting within that region can then fail right away, see {@link
+   * ExhaustedRegionCache}.
+   */
+  private void rememberExhaustedRegion(SearchContext searchContext) {
+    if (!pathfinderConfiguration.isAllowingFailFast()) return;
+
+    Object signature =
+      ExhaustedRegionCache.getSignature(
+        pathfinderConfiguration, searchContext.getFilters(), searchContext.getFilterStages());
+    if (signature == null) return;
+
+    ExhaustedRegionCache.remember(
+      signature,
+      searchContext.getStart(),
+      searchContext.getExaminedPositions(),
+      searchContext.getChunkVersions(),
+      margin,
+      determineNonLoadingSnapshotManager());
+  }
+
+  private void rememberFoundPath(SearchContext searchContext, Node targetNode) {
+    if (resultCache == null) return;
+
+    Object signature =
+      ExhaustedRegionCache.getSignature(
+        pathfinderConfiguration, searchContext.getFilters(), searchContext.getFilterStages());
+    if (signature == null) return;
+
+    resultCache.putPath(
+      signature, tracePathFromNode(targetNode), searchContext.getChunkVersions());
+  }
+
+  private void resumeParkedNodes(SearchContext searchContext) {
+    Collection<Node> resumedNodes = searchContext.unparkLoadedNodes();
+    if (!resumedNodes.isEmpty()) {
+      evaluateResumedNodes(searchContext, resumedNodes);
+    }
+  }
+
+  /**
+   * Parks the node in the search context if its chunk still has to be loaded, so that the search
+   * can go on with other nodes in the meantime. Parking only happens when chunks are allowed to be
+   * loaded and never on the main thread, since the load itself needs the main thread to complete.
+   *
+   * @return whether the node has been parked
+   */
+  protected boolean parkIfChunkMissing(SearchContext searchContext, Node node) {
+    if (!isLoadingChunksAhead() || Bukkit.isPrimaryThread()) return false;
+
+    Optional<CompletableFuture<ChunkSnapshot>> pendingLoad =
+      FailingSnapshotManager.requestIfMissing(node.getPosition());
+    if (!pendingLoad.isPresent()) return false;
+
+    PathPosition position = node.getPosition();
+    searchContext.park(
+      ChunkUtils.getChunkKey(position.getBlockX() >> 4, position.getBlockZ() >> 4),
+      pendingLoad.get(),
+      node);
+    return true;
   }
 
-  private CompletionStage<PathfinderResult> initiateSyncPathing(
+  private void prefetchAheadIfNeeded(Node currentNode) {
+    if (isLoadingChunksAhead() && currentNode.getParent() != null) {
+      ChunkPrefetcher.prefetchAhead(
+        currentNode.getParent().getPosition(), currentNode.getPosition());
+    }
+  }
+
+  /**
+   * Chunks are only loaded ahead of the search if loading is allowed at all. When region files are
+   * read, unloaded chunks are read from disk instead, so loading them ahead would be wasted work.
+   */
+  private boolean isLoadingChunksAhead() {
+    return pathfinderConfiguration.isLoadingChunks()
+      && !pathfinderConfiguration.isReadingRegionFiles();
+  }
+
+  /**
+   * Takes an idle context from the pool, or creates a new one if there is none, and prepares it for
+   * the search.
+   */
+  private SearchContext acquireSearchContext(
     PathPosition start,
     PathPosition target,
     List<PathFilter> filters,
     List<PathFilterStage> filterStages) {
+    SearchContext searchContext = contextPool.poll();
+    if (searchContext == null) searchContext = new SearchContext();
+
+    searchContext.begin(
+        start, target, filters, filterStages, snapshotManager, createStartNode(start, target));
+    searchContext.recordChunkVersions(start, margin);
+    activeSearches.add(searchContext);
+    return searchContext;
+  }
+
+  /** Clears the context of a finished search and returns it to the pool, if there is room. */
+  private void releaseSearchContext(SearchContext searchContext) {
+    activeSearches.remove(searchContext);
+
+    boolean reusable = searchContext.isReusable();
+    searchContext.clear();
+    if (reusable && contextPool.size() < MAX_POOLED_CONTEXTS) contextPool.offer(searchContext);
+  }
+
+  private CompletionStage<PathfinderResult> initiateSyncPathing(SearchContext searchContext) {
     try {
       return CompletableFuture.completedFuture(
-        executePathingAndCleanupFilters(start, target, filters, filterStages));
+        executePathingAndCleanupFilters(searchContext).toCompletableFuture().join());
     } catch (Exception e) {
       throw ErrorLogger.logFatalError("Failed to find path sync", e);
     }
   }
 
-  private PathfinderResult executePathingAndCleanupFilters(
-    PathPosition start,
-    PathPosition target,
-    List<PathFilter> filters,
-    List<PathFilterStage> filterStages) {
-    PathfinderResult pathfinderResult = executePathing(start, target, filters, filterStages);
-    filters.forEach(PathFilter::cleanup);
-    filterStages.forEach(PathFilterStage::cleanup);
-    return pathfinderResult;
+  private CompletionStage<PathfinderResult> executePathingAndCleanupFilters(
+    SearchContext searchContext) {
+    // composed instead of called directly, so the context is released even if the search throws
+    return CompletableFuture.completedFuture(searchContext)
+      .thenCompose(this::failIfUnreachableOrExecutePathing)
+      .whenComplete(
+        (pathfinderResult, throwable) -> {
+          searchContext.getFilters().forEach(PathFilter::cleanup);
+          searchContext.getFilterStages().forEach(PathFilterStage::cleanup);
+          releaseSearchContext(searchContext);
+        });
+  }
+
+  private CompletionStage<PathfinderResult> failIfUnreachableOrExecutePathing(
+    SearchContext searchContext) {
+    if (!isFastFailEnabledAndComponentUnreachable(searchContext))
+      return executePathing(searchContext);
+
+    return CompletableFuture.completedFuture(
+      finishPathing(
+        new PathfinderResultImpl(
+          PathState.INITIALLY_FAILED,
+          new PathImpl(
+            searchContext.getStart(), searchContext.getTarget(), EMPTY_LINKED_HASHSET))));
   }
 
   private PathfinderResult handleException(
@@ -247,6 +751,8 @@ abstract class AbstractPathfinder implements Pathfinder {
   }
 
   private void raiseFinishedEvent(PathfinderResult pathfinderResult) {
+    if (!raisingEvents) return;
+
     PathingFinishedEvent finishedEvent = new PathingFinishedEvent(pathfinderResult);
     EventPublisher.raiseEvent(finishedEvent);
   }
@@ -256,17 +762,21 @@ abstract class AbstractPathfinder implements Pathfinder {
     PathPosition target,
     List<PathFilter> filters,
     List<PathFilterStage> filterStages) {
+    if (!raisingEvents) return;
+
     PathingStartFindEvent startEvent =
       new PathingStartFindEvent(start, target, filters, filterStages);
     EventPublisher.raiseEvent(startEvent);
   }
 
   private Node createStartNode(PathPosition start, PathPosition target) {
+    PathPosition startBlock = start.floor();
+    PathPosition targetBlock = target.floor();
     return new Node(
-      start.floor(),
-      start.floor(),
-      target.floor(),
-      pathfinderConfiguration.getHeuristicWeights(),
+      startBlock,
+      startBlock,
+      targetBlock,
+      heuristic.prepare(startBlock, targetBlock),
       0);
   }
 
@@ -372,13 +882,22 @@ abstract class AbstractPathfinder implements Pathfinder {
   /**
    * The tick method is called to tick the pathfinding algorithm.
    */
-  protected abstract void tick(
-    PathPosition start,
-    PathPosition target,
-    Node currentNode,
-    Depth depth,
-    FibonacciHeap<Double, Node> nodeQueue,
-    Set<PathPosition> examinedPositions,
-    List<PathFilter> filters,
-    List<PathFilterStage> filterStages);
+  protected abstract void tick(SearchContext searchContext, Node currentNode);
+
+  /**
+   * Called with every node taken from the queue, right before it is expanded. Nodes which are not
+   * expandable are dropped.
+   *
+   * @return whether the node may be expanded, true by default
+   */
+  protected boolean isExpandable(SearchContext searchContext, Node node) {
+    return true;
+  }
+
+  /**
+   * Called with nodes which had been parked while their chunk was loading. The chunk of those nodes
+   * is available now, so they are to be evaluated as if they had just been discovered.
+   */
+  protected abstract void evaluateResumedNodes(
+    SearchContext searchContext, Collection<Node> resumedNodes);
 }
@@ -0,0 +1,276 @@
+package org.patheloper.model.pathing.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import lombok.Value;
+import lombok.experimental.UtilityClass;
+import org.patheloper.api.pathing.configuration.PathfinderConfiguration;
+import org.patheloper.api.pathing.filter.PathFilter;
+import org.patheloper.api.pathing.filter.PathFilterStage;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathEnvironment;
+import org.patheloper.api.wrapper.PathPosition;
+import org.patheloper.model.snapshot.ChunkVersions;
+import org.patheloper.util.ChunkUtils;
+import org.patheloper.util.ExpiringHashMap;
+import org.patheloper.util.LongLongHashMap;
+
+/**
+ * Remembers the regions explored by searches which ran out of nodes. Such a region holds every
+ * position reachable from the start of the search, so any later search with the same rules
+ * starting inside of it can't reach a target outside of it either, until one of its chunks
+ * changes.
+ *
+ * <p>Regions are stored as a bitset per chunk section, tagged with the {@link ChunkVersions
+ * version} of every chunk whose blocks could have shaped them, and indexed by the sections they
+ * span. They are shared between all pathfinders whose searches follow the same rules, see {@link
+ * #getSignature}.
+ */
+@UtilityClass
+class ExhaustedRegionCache {
+
+  /** Regions spanning more sections are not remembered, to not hold on to memory. */
+  private static final int MAX_SECTIONS = 256;
+
+  /** The amount of regions remembered per section, older ones are dropped first. */
+  private static final int MAX_REGIONS_PER_SECTION = 4;
+
+  /** How far blocks around a position may decide whether it is valid, e.g. for sized entities. */
+  private static final int MIN_MARGIN = 2;
+
+  private static final Map<RegionKey, Map<Long, ExpiringHashMap.Entry<ExhaustedRegion[]>>>
+      REGIONS = new ConcurrentHashMap<>();
+
+  /**
+   * Sums up everything deciding which positions a search may visit. Searches only share regions
+   * if their signatures are equal.
+   *
+   * @return the signature, or null if the search doesn't follow rules which stay the same between
+   *     searches, e.g. because a filter doesn't share its verdicts or costs are provided
+   */
+  @Nullable
+  Object getSignature(
+      PathfinderConfiguration pathfinderConfiguration,
+      List<PathFilter> filters,
+      List<PathFilterStage> filterStages) {
+    if (pathfinderConfiguration.getCostProvider() != null) return null;
+
+    List<Object> filterKeys = new ArrayList<>(filters.size());
+    for (PathFilter filter : filters) {
+      Object key = filter.getSharedVerdictKey();
+      if (key == null) return null;
+      filterKeys.add(key);
+    }
+
+    List<Object> stageKeys = new ArrayList<>(filterStages.size());
+    for (PathFilterStage filterStage : filterStages) {
+      Object key = filterStage.getSharedVerdictKey();
+      if (key == null) return null;
+      stageKeys.add(key);
+    }
+
+    return Arrays.asList(
+        filterKeys,
+        stageKeys,
+        pathfinderConfiguration.isAllowingDiagonal(),
+        pathfinderConfiguration.isPrioritizing(),
+        pathfinderConfiguration.getEntityWidth(),
+        pathfinderConfiguration.getEntityHeight(),
+        pathfinderConfiguration.getSearchMode(),
+        pathfinderConfiguration.getMaxStepUp(),
+        pathfinderConfiguration.getMaxDrop(),
+        pathfinderConfiguration.getMaxJumpGap());
+  }
+
+  /**
+   * @return how far blocks around a position may decide whether it is valid, which includes the
+   *     blocks a surface search passes on its way to the position when jumping over gaps
+   */
+  int getMargin(PathfinderConfiguration pathfinderConfiguration) {
+    return Math.max(MIN_MARGIN, 1 + Math.max(0, pathfinderConfiguration.getMaxJumpGap()));
+  }
+
+  /** Adds the chunks holding blocks within the margin around the position to the set of chunks. */
+  void addChunks(Set<Long> chunks, PathPosition position, int margin) {
+    int x = position.getBlockX();
+    int z = position.getBlockZ();
+    for (int chunkX = (x - margin) >> 4; chunkX <= (x + margin) >> 4; chunkX++)
+      for (int chunkZ = (z - margin) >> 4; chunkZ <= (z + margin) >> 4; chunkZ++)
+        chunks.add(ChunkUtils.getChunkKey(chunkX, chunkZ));
+  }
+
+  /**
+   * Checks whether the start lies within a remembered region which doesn't contain the target.
+   */
+  boolean isExhausted(Object signature, PathPosition start, PathPosition target) {
+    UUID worldUUID = start.getPathEnvironment().getUuid();
+    Map<Long, ExpiringHashMap.Entry<ExhaustedRegion[]>> sections =
+        REGIONS.get(new RegionKey(signature, worldUUID));
+    if (sections == null) return false;
+
+    int startX = start.getBlockX();
+    int startY = start.getBlockY();
+    int startZ = start.getBlockZ();
+    ExpiringHashMap.Entry<ExhaustedRegion[]> entry =
+        sections.get(ChunkUtils.getSectionKey(startX >> 4, startY >> 4, startZ >> 4));
+    if (entry == null) return false;
+
+    for (ExhaustedRegion region : entry.getValue()) {
+      if (region.contains(startX, startY, startZ)
+          && !region.contains(target.getBlockX(), target.getBlockY(), target.getBlockZ())
+          && region.isCurrent()) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Remembers the region explored by a search which ran out of nodes.
+   *
+   * @param chunkVersions the version of each chunk at the time the search first read it, keyed
+   *     by its chunk key, the region is dropped if any of its chunks has changed since
+   * @param margin the {@link #getMargin margin} of the search
+   * @param snapshotManager the manager to check the chunks around the region with, should not
+   *     load chunks
+   */
+  void remember(
+      Object signature,
+      PathPosition start,
+      Set<PathPosition> examinedPositions,
+      LongLongHashMap chunkVersions,
+      int margin,
+      SnapshotManager snapshotManager) {
+    PathEnvironment environment = start.getPathEnvironment();
+    Map<Long, long[]> sections = new HashMap<>();
+    Set<Long> chunks = new HashSet<>();
+
+    PathPosition startBlock = start.floor();
+    if (!add(sections, chunks, startBlock, margin)) return;
+    for (PathPosition position : examinedPositions) {
+      if (!add(sections, chunks, position, margin)) return;
+    }
+
+    // positions next to chunks which couldn't be read were rejected for that alone, but those
+    // chunks may become available without any change being reported
+    int[] chunkX = new int[chunks.size()];
+    int[] chunkZ = new int[chunks.size()];
+    int[] versions = new int[chunks.size()];
+    int i = 0;
+    for (long chunkKey : chunks) {
+      chunkX[i] = (int) chunkKey;
+      chunkZ[i] = (int) (chunkKey >> 32);
+      if (snapshotManager.getMaterial(
+              environment, chunkX[i] << 4, environment.getMinHeight(), chunkZ[i] << 4)
+          == null) return;
+
+      versions[i] = ChunkVersions.getVersion(environment.getUuid(), chunkX[i], chunkZ[i]);
+      if (versions[i] != chunkVersions.get(chunkKey, -1)) return;
+      i++;
+    }
+
+    ExhaustedRegion region =
+        new ExhaustedRegion(environment.getUuid(), sections, chunkX, chunkZ, versions);
+    Map<Long, ExpiringHashMap.Entry<ExhaustedRegion[]>> index =
+        REGIONS.computeIfAbsent(
+            new RegionKey(signature, environment.getUuid()), k -> new ExpiringHashMap<>());
+    for (long sectionKey : sections.keySet()) {
+      index.compute(
+          sectionKey,
+          (key, entry) -> new ExpiringHashMap.Entry<>(prepend(region, entry)));
+    }
+  }
+
+  /**
+   * Adds the position to the bitsets of the region, and the chunks whose blocks may have decided
+   * about it to the set of chunks.
+   *
+   * @return false if the region has grown too large
+   */
+  private boolean add(
+      Map<Long, long[]> sections, Set<Long> chunks, PathPosition position, int margin) {
+    int x = position.getBlockX();
+    int y = position.getBlockY();
+    int z = position.getBlockZ();
+
+    long sectionKey = ChunkUtils.getSectionKey(x >> 4, y >> 4, z >> 4);
+    long[] bits = sections.get(sectionKey);
+    if (bits == null) {
+      if (sections.size() >= MAX_SECTIONS) return false;
+      bits = new long[16 * 16 * 16 / Long.SIZE];
+      sections.put(sectionKey, bits);
+    }
+
+    int index = getIndex(x, y, z);
+    bits[index >>> 6] |= 1L << index;
+
+    addChunks(chunks, position, margin);
+    return true;
+  }
+
+  /** Puts the region in front of the ones already indexed, dropping those which are outdated. */
+  private ExhaustedRegion[] prepend(
+      ExhaustedRegion region, @Nullable ExpiringHashMap.Entry<ExhaustedRegion[]> entry) {
+    List<ExhaustedRegion> regions = new ArrayList<>(MAX_REGIONS_PER_SECTION);
+    regions.add(region);
+    if (entry != null) {
+      for (ExhaustedRegion indexed : entry.getValue()) {
+        if (regions.size() >= MAX_REGIONS_PER_SECTION) break;
+        if (indexed.isCurrent()) regions.add(indexed);
+      }
+    }
+    return regions.toArray(new ExhaustedRegion[0]);
+  }
+
+  private static int getIndex(int x, int y, int z) {
+    return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+  }
+
+  @Value
+  private static class RegionKey {
+    Object signature;
+    UUID worldUUID;
+  }
+
+  /** The positions of one exhausted search, along with the chunk versions they were taken at. */
+  private static final class ExhaustedRegion {
+
+    private final UUID worldUUID;
+    private final Map<Long, long[]> sections;
+    private final int[] chunkX;
+    private final int[] chunkZ;
+    private final int[] versions;
+
+    ExhaustedRegion(
+        UUID worldUUID, Map<Long, long[]> sections, int[] chunkX, int[] chunkZ, int[] versions) {
+      this.worldUUID = worldUUID;
+      this.sections = sections;
+      this.chunkX = chunkX;
+      this.chunkZ = chunkZ;
+      this.versions = versions;
+    }
+
+    boolean contains(int x, int y, int z) {
+      long[] bits = sections.get(ChunkUtils.getSectionKey(x >> 4, y >> 4, z >> 4));
+      if (bits == null) return false;
+
+      int index = getIndex(x, y, z);
+      return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /** @return whether none of the chunks the region depends on has changed since */
+    boolean isCurrent() {
+      for (int i = 0; i < versions.length; i++) {
+        if (ChunkVersions.getVersion(worldUUID, chunkX[i], chunkZ[i]) != versions[i])
+          return false;
+      }
+      return true;
+    }
+  }
+}
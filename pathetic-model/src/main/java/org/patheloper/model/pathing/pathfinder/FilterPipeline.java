@@ -0,0 +1,148 @@
+package org.patheloper.model.pathing.pathfinder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.patheloper.api.pathing.filter.PathFilter;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathEnvironment;
+
+/**
+ * Evaluates a fixed list of filters, all of which have to pass, in the order that rejects a node
+ * the cheapest. It measures how often each filter rejects and samples how long it takes, then
+ * periodically sorts the filters by their expected cost per rejection, so cheap and selective
+ * filters run first and expensive ones rarely see nodes a cheap filter would have rejected.
+ *
+ * <p>Until the first measurements are in, the filters are ordered by their {@link
+ * PathFilter#getCostHint() cost hint}. Filters keep their index no matter where they are in the
+ * order, so per-filter state like the {@link FilterVerdictCache} stays valid.
+ *
+ * <p>Not thread-safe, a pipeline belongs to a single search.
+ */
+class FilterPipeline {
+
+  /** Only every n-th evaluation of a filter is timed, since reading the clock isn't free. */
+  private static final int SAMPLE_INTERVAL = 8;
+
+  private static final int FIRST_REORDER = 64;
+  private static final int REORDER_INTERVAL = 1024;
+
+  private final List<PathFilter> filters;
+  private final int[] order;
+
+  private final long[] evaluations;
+  private final long[] rejections;
+  private final long[] samples;
+  private final long[] sampledNanos;
+
+  private int runs;
+  private int nextReorder = FIRST_REORDER;
+
+  FilterPipeline(Collection<PathFilter> filters) {
+    this.filters = new ArrayList<>(filters);
+    this.order = new int[this.filters.size()];
+    this.evaluations = new long[order.length];
+    this.rejections = new long[order.length];
+    this.samples = new long[order.length];
+    this.sampledNanos = new long[order.length];
+
+    double[] costHints = new double[order.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+      costHints[i] = this.filters.get(i).getCostHint();
+    }
+    sortByRank(costHints);
+  }
+
+  int size() {
+    return order.length;
+  }
+
+  /**
+   * Returns the order to evaluate the filters in for the next node, as filter indices. The array
+   * may change with the next call, so it must be iterated before asking for the order again.
+   */
+  int[] getOrder() {
+    if (++runs == nextReorder) {
+      reorder();
+      nextReorder = runs + REORDER_INTERVAL;
+    }
+    return order;
+  }
+
+  /** Runs the filter with the given index and records its verdict, without consulting the order. */
+  boolean evaluate(
+      int filterIndex,
+      int x,
+      int y,
+      int z,
+      int parentX,
+      int parentY,
+      int parentZ,
+      PathEnvironment environment,
+      SnapshotManager snapshotManager) {
+    PathFilter filter = filters.get(filterIndex);
+
+    boolean passed;
+    if (evaluations[filterIndex]++ % SAMPLE_INTERVAL == 0) {
+      long startNanos = System.nanoTime();
+      passed = filter.filter(x, y, z, parentX, parentY, parentZ, environment, snapshotManager);
+      sampledNanos[filterIndex] += System.nanoTime() - startNanos;
+      samples[filterIndex]++;
+    } else {
+      passed = filter.filter(x, y, z, parentX, parentY, parentZ, environment, snapshotManager);
+    }
+
+    if (!passed) rejections[filterIndex]++;
+    return passed;
+  }
+
+  /** Runs all filters in the current order, stopping at the first one that rejects. */
+  boolean evaluateAll(
+      int x,
+      int y,
+      int z,
+      int parentX,
+      int parentY,
+      int parentZ,
+      PathEnvironment environment,
+      SnapshotManager snapshotManager) {
+    for (int filterIndex : getOrder()) {
+      if (!evaluate(filterIndex, x, y, z, parentX, parentY, parentZ, environment, snapshotManager))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Ranks every filter by its mean cost divided by its rejection rate, the cost spent per rejected
+   * node. Filters that have never been evaluated or never rejected go last.
+   */
+  private void reorder() {
+    double[] ranks = new double[order.length];
+    for (int i = 0; i < order.length; i++) {
+      if (samples[i] == 0 || rejections[i] == 0) {
+        ranks[i] = Double.MAX_VALUE;
+        continue;
+      }
+
+      double meanNanos = (double) sampledNanos[i] / samples[i];
+      double rejectionRate = (double) rejections[i] / evaluations[i];
+      ranks[i] = meanNanos / rejectionRate;
+    }
+    sortByRank(ranks);
+  }
+
+  /** Insertion sort, which keeps the previous order among equal ranks and suits a short list. */
+  private void sortByRank(double[] ranks) {
+    for (int i = 1; i < order.length; i++) {
+      int filterIndex = order[i];
+      int j = i - 1;
+      while (j >= 0 && ranks[order[j]] > ranks[filterIndex]) {
+        order[j + 1] = order[j];
+        j--;
+      }
+      order[j + 1] = filterIndex;
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package org.patheloper.model.pathing.pathfinder;
+
+import java.util.List;
+import org.patheloper.api.pathing.filter.PathFilter;
+import org.patheloper.api.pathing.filter.PathFilterStage;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathEnvironment;
+import org.patheloper.model.snapshot.ChunkVersions;
+import org.patheloper.util.ChunkUtils;
+import org.patheloper.util.LongLongHashMap;
+
+/**
+ * Remembers the verdicts of deterministic filters and filter stages for the positions of a single
+ * search, so that a position reached from several parents, or checked as the corner of several
+ * diagonal moves, is only run through them once.
+ *
+ * <p>The filters of the search occupy the slots from 0 on, followed by the filter stages. Each
+ * position maps to a single long holding two bits per slot, so only the first {@link #MAX_SLOTS}
+ * slots are cached.
+ *
+ * <p>Slots whose filter or stage shares its verdicts across searches fall back to the {@link
+ * SharedVerdictCache} on a miss, and store new verdicts there as well. Verdicts on blocks which
+ * are not available are kept out of it, since another snapshot manager might be able to read them.
+ */
+class FilterVerdictCache {
+
+  static final int UNKNOWN = 0;
+  static final int PASSED = 1;
+  static final int FAILED = 2;
+
+  private static final int MAX_SLOTS = Long.SIZE / 2;
+
+  private final LongLongHashMap verdicts;
+  private final boolean[] cacheable;
+  private final Object[] sharedKeys;
+  private final int stageOffset;
+  private final PathEnvironment environment;
+  private final SnapshotManager snapshotManager;
+
+  /**
+   * @param snapshotManager the manager the search reads blocks through
+   * @param verdicts the empty map to keep the verdicts in, which the search context reuses between
+   *     searches
+   */
+  FilterVerdictCache(
+      List<PathFilter> filters,
+      List<PathFilterStage> filterStages,
+      PathEnvironment environment,
+      SnapshotManager snapshotManager,
+      LongLongHashMap verdicts) {
+    this.verdicts = verdicts;
+    this.stageOffset = filters.size();
+    this.environment = environment;
+    this.snapshotManager = snapshotManager;
+    this.cacheable = new boolean[Math.min(MAX_SLOTS, filters.size() + filterStages.size())];
+    this.sharedKeys = new Object[cacheable.length];
+
+    for (int slot = 0; slot < cacheable.length; slot++) {
+      if (slot < stageOffset) {
+        cacheable[slot] = filters.get(slot).isDeterministic();
+        sharedKeys[slot] = filters.get(slot).getSharedVerdictKey();
+      } else {
+        cacheable[slot] = filterStages.get(slot - stageOffset).isDeterministic();
+        sharedKeys[slot] = filterStages.get(slot - stageOffset).getSharedVerdictKey();
+      }
+    }
+  }
+
+  /**
+   * @return the cached verdict of the filter, one of {@link #UNKNOWN}, {@link #PASSED} or {@link
+   *     #FAILED}
+   */
+  int getFilterVerdict(int filterIndex, int x, int y, int z) {
+    return getVerdict(filterIndex, x, y, z);
+  }
+
+  int getStageVerdict(int stageIndex, int x, int y, int z) {
+    return getVerdict(stageOffset + stageIndex, x, y, z);
+  }
+
+  /**
+   * Reads the version of the chunk to store the verdict of the filter under, which has to happen
+   * before the filter runs, so that changes to the chunk while it runs are noticed.
+   *
+   * @return the version, or 0 if the filter doesn't share its verdicts
+   */
+  int getFilterVersion(int filterIndex, int x, int z) {
+    return getVersion(filterIndex, x, z);
+  }
+
+  int getStageVersion(int stageIndex, int x, int z) {
+    return getVersion(stageOffset + stageIndex, x, z);
+  }
+
+  /**
+   * Stores a verdict, right after {@link #getFilterVerdict} missed on the same position.
+   *
+   * @param version the version read by {@link #getFilterVersion} before the filter ran
+   */
+  void putFilterVerdict(int filterIndex, int x, int y, int z, int version, boolean passed) {
+    putVerdict(filterIndex, x, y, z, version, passed);
+  }
+
+  void putStageVerdict(int stageIndex, int x, int y, int z, int version, boolean passed) {
+    putVerdict(stageOffset + stageIndex, x, y, z, version, passed);
+  }
+
+  private int getVersion(int slot, int x, int z) {
+    if (slot >= cacheable.length || !cacheable[slot] || sharedKeys[slot] == null) return 0;
+    return ChunkVersions.getVersion(environment.getUuid(), x >> 4, z >> 4);
+  }
+
+  private int getVerdict(int slot, int x, int y, int z) {
+    if (slot >= cacheable.length || !cacheable[slot]) return UNKNOWN;
+
+    int verdict = (int) (verdicts.get(ChunkUtils.getBlockKey(x, y, z), 0L) >>> (slot * 2)) & 3;
+    if (verdict != UNKNOWN || sharedKeys[slot] == null) return verdict;
+
+    verdict = SharedVerdictCache.getVerdict(sharedKeys[slot], environment.getUuid(), x, y, z);
+    if (verdict != UNKNOWN) putLocalVerdict(slot, x, y, z, verdict);
+    return verdict;
+  }
+
+  private void putVerdict(int slot, int x, int y, int z, int version, boolean passed) {
+    if (slot >= cacheable.length || !cacheable[slot]) return;
+
+    putLocalVerdict(slot, x, y, z, passed ? PASSED : FAILED);
+    if (sharedKeys[slot] != null && snapshotManager.getMaterial(environment, x, y, z) != null)
+      SharedVerdictCache.putVerdict(
+          sharedKeys[slot], environment.getUuid(), x, y, z, version, passed);
+  }
+
+  private void putLocalVerdict(int slot, int x, int y, int z, int verdict) {
+    long key = ChunkUtils.getBlockKey(x, y, z);
+    verdicts.put(key, verdicts.get(key, 0L) | (long) verdict << (slot * 2));
+  }
+}
@@ -0,0 +1,203 @@
+package org.patheloper.model.pathing.pathfinder;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import lombok.Getter;
+import lombok.Value;
+import org.patheloper.api.wrapper.PathPosition;
+import org.patheloper.model.snapshot.ChunkVersions;
+import org.patheloper.util.LongLongHashMap;
+
+/**
+ * Keeps the paths most recently found by a pathfinder, so that repeated requests between the same
+ * blocks are answered without searching again. Paths are keyed by their floored start and target
+ * along with the {@link ExhaustedRegionCache#getSignature signature} of their search. The
+ * configuration is implied, since every pathfinder has its own cache.
+ *
+ * <p>Each path is tagged with the {@link ChunkVersions version} of the chunks it leads through and
+ * dropped once any of them changes. Once the cache is full, the least recently used path is
+ * dropped.
+ */
+class PathResultCache {
+
+  private final int capacity;
+
+  /** The {@link ExhaustedRegionCache#getMargin margin} of the searches of the pathfinder. */
+  private final int margin;
+
+  private final Map<PathKey, CachedPath> paths;
+
+  PathResultCache(int capacity, int margin) {
+    this.capacity = capacity;
+    this.margin = margin;
+    this.paths =
+        new LinkedHashMap<PathKey, CachedPath>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<PathKey, CachedPath> eldest) {
+            return size() > PathResultCache.this.capacity;
+          }
+        };
+  }
+
+  /**
+   * @return the cached path between exactly the given blocks, or null if there is none or it is
+   *     outdated
+   */
+  @Nullable
+  synchronized List<PathPosition> getPath(
+      Object signature, PathPosition startBlock, PathPosition targetBlock) {
+    PathKey key = new PathKey(signature, startBlock, targetBlock);
+    CachedPath cachedPath = paths.get(key);
+    if (cachedPath == null) return null;
+
+    if (!cachedPath.isCurrent()) {
+      paths.remove(key);
+      return null;
+    }
+    return cachedPath.getPositions();
+  }
+
+  /**
+   * Looks for the cached path whose start and target are closest to the given blocks, while both
+   * are at most the given distance away from them on every axis. Outdated paths found on the way
+   * are dropped.
+   *
+   * @return the path, or null if there is none close enough
+   */
+  @Nullable
+  synchronized CachedPath findNearbyPath(
+      Object signature, PathPosition startBlock, PathPosition targetBlock, int distance) {
+    CachedPath nearest = null;
+    int nearestDistance = Integer.MAX_VALUE;
+
+    Iterator<Map.Entry<PathKey, CachedPath>> iterator = paths.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<PathKey, CachedPath> entry = iterator.next();
+      PathKey key = entry.getKey();
+      if (!key.getSignature().equals(signature)) continue;
+
+      int startDistance = getDistance(key.getStartBlock(), startBlock);
+      int targetDistance = getDistance(key.getTargetBlock(), targetBlock);
+      if (startDistance > distance
+          || targetDistance > distance
+          || startDistance + targetDistance >= nearestDistance) continue;
+
+      if (!entry.getValue().isCurrent()) {
+        iterator.remove();
+        continue;
+      }
+
+      nearest = entry.getValue();
+      nearestDistance = startDistance + targetDistance;
+    }
+
+    // mark it as used, which iterating over the entries doesn't
+    if (nearest != null)
+      paths.get(new PathKey(signature, nearest.getStartBlock(), nearest.getTargetBlock()));
+    return nearest;
+  }
+
+  /**
+   * Caches the path of a search, unless a chunk around it has changed since the search read it,
+   * since the path might then lead through blocks which are no longer there.
+   *
+   * @param positions the positions of the path, from its start to its target
+   * @param chunkVersions the version of each chunk at the time the search first read it, keyed
+   *     by its chunk key
+   */
+  void putPath(Object signature, List<PathPosition> positions, LongLongHashMap chunkVersions) {
+    PathPosition startBlock = positions.get(0);
+    PathPosition targetBlock = positions.get(positions.size() - 1);
+    UUID worldUUID = startBlock.getPathEnvironment().getUuid();
+
+    // blocks around the positions may have decided whether they are valid as well
+    Set<Long> chunks = new HashSet<>();
+    for (PathPosition position : positions)
+      ExhaustedRegionCache.addChunks(chunks, position, margin);
+
+    int[] chunkX = new int[chunks.size()];
+    int[] chunkZ = new int[chunks.size()];
+    int[] versions = new int[chunks.size()];
+    int i = 0;
+    for (long chunkKey : chunks) {
+      chunkX[i] = (int) chunkKey;
+      chunkZ[i] = (int) (chunkKey >> 32);
+      versions[i] = ChunkVersions.getVersion(worldUUID, chunkX[i], chunkZ[i]);
+      if (versions[i] != chunkVersions.get(chunkKey, -1)) return;
+      i++;
+    }
+
+    CachedPath cachedPath =
+        new CachedPath(
+            startBlock,
+            targetBlock,
+            Collections.unmodifiableList(positions),
+            chunkX,
+            chunkZ,
+            versions);
+    synchronized (this) {
+      paths.put(new PathKey(signature, startBlock, targetBlock), cachedPath);
+    }
+  }
+
+  private static int getDistance(PathPosition position, PathPosition otherPosition) {
+    if (!position.getPathEnvironment().equals(otherPosition.getPathEnvironment()))
+      return Integer.MAX_VALUE;
+
+    return Math.max(
+        Math.abs(position.getBlockX() - otherPosition.getBlockX()),
+        Math.max(
+            Math.abs(position.getBlockY() - otherPosition.getBlockY()),
+            Math.abs(position.getBlockZ() - otherPosition.getBlockZ())));
+  }
+
+  @Value
+  private static class PathKey {
+    Object signature;
+    PathPosition startBlock;
+    PathPosition targetBlock;
+  }
+
+  /** A found path, along with the versions of the chunks it was found at. */
+  static final class CachedPath {
+
+    @Getter private final PathPosition startBlock;
+    @Getter private final PathPosition targetBlock;
+    @Getter private final List<PathPosition> positions;
+    private final int[] chunkX;
+    private final int[] chunkZ;
+    private final int[] versions;
+
+    private CachedPath(
+        PathPosition startBlock,
+        PathPosition targetBlock,
+        List<PathPosition> positions,
+        int[] chunkX,
+        int[] chunkZ,
+        int[] versions) {
+      this.startBlock = startBlock;
+      this.targetBlock = targetBlock;
+      this.positions = positions;
+      this.chunkX = chunkX;
+      this.chunkZ = chunkZ;
+      this.versions = versions;
+    }
+
+    /** @return whether none of the chunks around the path has changed since it was found */
+    boolean isCurrent() {
+      UUID worldUUID = startBlock.getPathEnvironment().getUuid();
+      for (int i = 0; i < versions.length; i++) {
+        if (ChunkVersions.getVersion(worldUUID, chunkX[i], chunkZ[i]) != versions[i])
+          return false;
+      }
+      return true;
+    }
+  }
+}
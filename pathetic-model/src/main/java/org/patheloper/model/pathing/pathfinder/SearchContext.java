@@ -0,0 +1,302 @@
+package org.patheloper.model.pathing.pathfinder;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.jheaps.tree.FibonacciHeap;
+import org.patheloper.api.pathing.filter.PathFilter;
+import org.patheloper.api.pathing.filter.PathFilterStage;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathPosition;
+import org.patheloper.model.pathing.Node;
+import org.patheloper.model.snapshot.ChunkVersions;
+import org.patheloper.model.snapshot.ClearanceMap;
+import org.patheloper.util.ChunkUtils;
+import org.patheloper.util.GridRegionData;
+import org.patheloper.util.LongLongHashMap;
+import org.patheloper.util.Tuple3;
+
+/**
+ * The SearchContext holds the whole state of a single search. Since nothing of it lives on the
+ * stack, a search can be suspended while it waits for chunks to load and later be resumed from
+ * exactly where it stopped, possibly on another thread.
+ *
+ * <p>Nodes whose chunk is not available yet are parked in the context instead of blocking the
+ * pathing thread. They are handed back to the search once their chunk has been loaded.
+ *
+ * <p>Contexts are pooled by their pathfinder and reused for later searches once cleared, so the
+ * collections they have grown are kept warm while no state leaks from one search into the next.
+ */
+@Getter
+class SearchContext {
+
+  /** Contexts which examined more positions than this are not reused, to not hold on to memory. */
+  private static final int MAX_REUSABLE_POSITIONS = 1 << 16;
+
+  private PathPosition start;
+  private PathPosition target;
+  private List<PathFilter> filters;
+  private List<PathFilterStage> filterStages;
+
+  private final FibonacciHeap<Double, Node> nodeQueue = new FibonacciHeap<>();
+  private final Set<PathPosition> examinedPositions = new HashSet<>();
+  private Depth depth;
+  private FilterVerdictCache verdictCache;
+  private FilterPipeline filterPipeline;
+
+  /** The pipelines running the filters of each stage, in the order of {@link #filterStages}. */
+  private final List<FilterPipeline> stagePipelines = new ArrayList<>();
+
+  @Setter private Node fallbackNode;
+
+  @Getter(AccessLevel.NONE)
+  private volatile boolean aborted;
+
+  /** Completed once the search is aborted, so that it stops waiting for chunks to load. */
+  @Getter(AccessLevel.NONE)
+  private volatile CompletableFuture<Void> abortSignal = new CompletableFuture<>();
+
+  /**
+   * Counts the searches this context has been used for, so that chunk loads completing after their
+   * search has ended don't leak into the next one.
+   */
+  @Getter(AccessLevel.NONE)
+  private volatile int generation;
+
+  @Getter(AccessLevel.NONE)
+  private final LongLongHashMap verdicts = new LongLongHashMap();
+
+  /**
+   * The version of each chunk at the time the search first read it, keyed by its chunk key, see
+   * {@link #recordChunkVersions}.
+   */
+  private final LongLongHashMap chunkVersions = new LongLongHashMap();
+
+  private final TraversalCostCache traversalCosts = new TraversalCostCache();
+
+  /**
+   * The regional examined positions and Bloom filters for each grid region, see {@link
+   * #getGridRegion}.
+   */
+  @Getter(AccessLevel.NONE)
+  private final Map<Tuple3<Integer>, GridRegionData> gridMap = new HashMap<>();
+
+  @Getter(AccessLevel.NONE)
+  private final Map<Long, List<Node>> parkedNodes = new HashMap<>();
+
+  @Getter(AccessLevel.NONE)
+  private final Map<Long, CompletableFuture<?>> pendingChunks = new HashMap<>();
+
+  @Getter(AccessLevel.NONE)
+  private final Set<PathPosition> parkedPositions = new HashSet<>();
+
+  /** Chunks whose load has completed, filled from whichever thread completed the load. */
+  @Getter(AccessLevel.NONE)
+  private final Queue<Long> loadedChunks = new ConcurrentLinkedQueue<>();
+
+  /** The passability around {@link #neighbourhoodCenter}, read in one go when first needed. */
+  @Getter(AccessLevel.NONE)
+  private final BitSet neighbourhood = new BitSet(SnapshotManager.NEIGHBOURHOOD_VOLUME);
+
+  @Getter(AccessLevel.NONE)
+  private Node neighbourhoodCenter;
+
+  /** The clearance map used last, nodes tend to stay within the same section for a while. */
+  @Getter(AccessLevel.NONE)
+  private ClearanceMap clearanceMap;
+
+  /** Prepares the context for a new search. The context must be empty, see {@link #clear()}. */
+  void begin(
+      PathPosition start,
+      PathPosition target,
+      List<PathFilter> filters,
+      List<PathFilterStage> filterStages,
+      SnapshotManager snapshotManager,
+      Node startNode) {
+    this.start = start;
+    this.target = target;
+    this.filters = filters;
+    this.filterStages = filterStages;
+    this.depth = new Depth(1);
+    this.verdictCache =
+        new FilterVerdictCache(
+            filters, filterStages, start.getPathEnvironment(), snapshotManager, verdicts);
+    this.filterPipeline = new FilterPipeline(filters);
+    for (PathFilterStage filterStage : filterStages)
+      stagePipelines.add(new FilterPipeline(filterStage.getFilters()));
+    this.fallbackNode = startNode;
+    this.nodeQueue.insert(startNode.getFCost(), startNode);
+  }
+
+  /**
+   * Drops all state of the previous search, while keeping the allocated collections around for
+   * the next one.
+   */
+  void clear() {
+    generation++;
+    aborted = false;
+    if (abortSignal.isDone()) abortSignal = new CompletableFuture<>();
+
+    start = null;
+    target = null;
+    filters = null;
+    filterStages = null;
+    depth = null;
+    verdictCache = null;
+    filterPipeline = null;
+    fallbackNode = null;
+    neighbourhoodCenter = null;
+    clearanceMap = null;
+
+    nodeQueue.clear();
+    examinedPositions.clear();
+    stagePipelines.clear();
+    verdicts.clear();
+    chunkVersions.clear();
+    traversalCosts.clear();
+    gridMap.clear();
+    parkedNodes.clear();
+    pendingChunks.clear();
+    parkedPositions.clear();
+    loadedChunks.clear();
+  }
+
+  /**
+   * @return whether the context is small enough to be kept for another search
+   */
+  boolean isReusable() {
+    return examinedPositions.size() <= MAX_REUSABLE_POSITIONS;
+  }
+
+  /**
+   * Records the {@link ChunkVersions version} of the chunks around a position the search is about
+   * to read, unless it has read them before.
+   *
+   * @param margin how far around the position blocks are read, see {@link
+   *     ExhaustedRegionCache#getMargin}
+   */
+  void recordChunkVersions(PathPosition position, int margin) {
+    UUID worldUUID = position.getPathEnvironment().getUuid();
+    int x = position.getBlockX();
+    int z = position.getBlockZ();
+    for (int chunkX = (x - margin) >> 4; chunkX <= (x + margin) >> 4; chunkX++)
+      for (int chunkZ = (z - margin) >> 4; chunkZ <= (z + margin) >> 4; chunkZ++) {
+        long chunkKey = ChunkUtils.getChunkKey(chunkX, chunkZ);
+        if (chunkVersions.get(chunkKey, -1) < 0)
+          chunkVersions.put(chunkKey, ChunkVersions.getVersion(worldUUID, chunkX, chunkZ));
+      }
+  }
+
+  /** Makes the search stop at its next step. Safe to call from any thread. */
+  void abort() {
+    aborted = true;
+    abortSignal.complete(null);
+  }
+
+  boolean isAborted() {
+    return aborted;
+  }
+
+  /** @return the data of the grid region with the given coordinates, created on first access */
+  GridRegionData getGridRegion(int gridX, int gridY, int gridZ) {
+    return gridMap.computeIfAbsent(new Tuple3<>(gridX, gridY, gridZ), k -> new GridRegionData());
+  }
+
+  /**
+   * Checks whether the block at the given offset from the center node is passable. The whole 3x3x3
+   * neighbourhood of the center is read at once, so further checks around the same node don't
+   * resolve any chunks.
+   */
+  boolean isPassableAround(
+      Node center, int offsetX, int offsetY, int offsetZ, SnapshotManager snapshotManager) {
+    if (neighbourhoodCenter != center) {
+      snapshotManager.getNeighbourhood(center.getPosition(), neighbourhood);
+      neighbourhoodCenter = center;
+    }
+    return neighbourhood.get(SnapshotManager.getNeighbourhoodIndex(offsetX, offsetY, offsetZ));
+  }
+
+  /**
+   * Checks whether an entity of the given size has enough room at the position of the node, see
+   * {@link ClearanceMap#fits}.
+   */
+  boolean fitsEntity(Node node, int width, int height, SnapshotManager snapshotManager) {
+    PathPosition position = node.getPosition();
+    int x = position.getBlockX();
+    int y = position.getBlockY();
+    int z = position.getBlockZ();
+
+    if (clearanceMap == null || !clearanceMap.covers(position.getPathEnvironment(), x, y, z))
+      clearanceMap = ClearanceMap.getMap(snapshotManager, position.getPathEnvironment(), x, y, z);
+    return clearanceMap.fits(x, y, z, width, height);
+  }
+
+  /**
+   * Parks the node until the given chunk load has completed. A position is only parked once, even
+   * if it is reached from several parents in the meantime.
+   */
+  void park(long chunkKey, CompletableFuture<?> chunkLoad, Node node) {
+    if (!parkedPositions.add(node.getPosition())) return;
+
+    List<Node> nodes = parkedNodes.get(chunkKey);
+    if (nodes == null) {
+      nodes = new ArrayList<>();
+      parkedNodes.put(chunkKey, nodes);
+      pendingChunks.put(chunkKey, chunkLoad);
+      int search = generation;
+      chunkLoad.whenComplete(
+          (snapshot, throwable) -> {
+            if (generation == search) loadedChunks.add(chunkKey);
+          });
+    }
+
+    nodes.add(node);
+  }
+
+  /** Removes and returns all parked nodes whose chunk has been loaded in the meantime. */
+  Collection<Node> unparkLoadedNodes() {
+    if (loadedChunks.isEmpty()) return Collections.emptyList();
+
+    List<Node> resumedNodes = new ArrayList<>();
+    Long chunkKey;
+    while ((chunkKey = loadedChunks.poll()) != null) {
+      pendingChunks.remove(chunkKey);
+      List<Node> nodes = parkedNodes.remove(chunkKey);
+      if (nodes == null) continue;
+
+      for (Node node : nodes) {
+        parkedPositions.remove(node.getPosition());
+        resumedNodes.add(node);
+      }
+    }
+    return resumedNodes;
+  }
+
+  boolean hasParkedNodes() {
+    return !parkedNodes.isEmpty();
+  }
+
+  /**
+   * @return a future which completes as soon as any of the chunks parked nodes are waiting for has
+   *     been loaded, regardless of whether that load succeeded, or the search has been aborted
+   */
+  CompletableFuture<Void> awaitParkedChunks() {
+    CompletableFuture<?>[] awaited =
+        pendingChunks.values().toArray(new CompletableFuture<?>[pendingChunks.size() + 1]);
+    awaited[pendingChunks.size()] = abortSignal;
+    return CompletableFuture.anyOf(awaited).handle((result, throwable) -> null);
+  }
+}
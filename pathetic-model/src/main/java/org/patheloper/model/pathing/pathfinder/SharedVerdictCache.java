@@ -0,0 +1,105 @@
+package org.patheloper.model.pathing.pathfinder;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import lombok.Value;
+import lombok.experimental.UtilityClass;
+import org.patheloper.model.snapshot.ChunkVersions;
+import org.patheloper.util.ChunkUtils;
+import org.patheloper.util.ExpiringHashMap;
+
+/**
+ * Keeps the verdicts of filters sharing them across searches, see {@link
+ * org.patheloper.api.pathing.filter.PathFilter#getSharedVerdictKey()}. The verdicts of each key
+ * are stored per chunk section as a packed bitset with two bits per block, tagged with the {@link
+ * ChunkVersions version} of the chunk they were taken from. A section is discarded as soon as its
+ * chunk has moved on to another version.
+ *
+ * <p>Safe to use from any thread. Verdicts of concurrent searches are merged into the same
+ * bitsets.
+ */
+@UtilityClass
+class SharedVerdictCache {
+
+  private static final Map<VerdictKey, Map<Long, ExpiringHashMap.Entry<SectionVerdicts>>>
+      VERDICTS = new ConcurrentHashMap<>();
+
+  /**
+   * @return the shared verdict, one of {@link FilterVerdictCache#UNKNOWN}, {@link
+   *     FilterVerdictCache#PASSED} or {@link FilterVerdictCache#FAILED}
+   */
+  int getVerdict(Object key, UUID worldUUID, int x, int y, int z) {
+    Map<Long, ExpiringHashMap.Entry<SectionVerdicts>> sections =
+        VERDICTS.get(new VerdictKey(key, worldUUID));
+    if (sections == null) return FilterVerdictCache.UNKNOWN;
+
+    ExpiringHashMap.Entry<SectionVerdicts> entry =
+        sections.get(ChunkUtils.getSectionKey(x >> 4, y >> 4, z >> 4));
+    if (entry == null
+        || entry.getValue().version != ChunkVersions.getVersion(worldUUID, x >> 4, z >> 4))
+      return FilterVerdictCache.UNKNOWN;
+
+    return entry.getValue().get(x, y, z);
+  }
+
+  /**
+   * Stores a verdict, unless the chunk has moved on from the version the verdict was reached at.
+   *
+   * @param version the version of the chunk read before the filter was evaluated
+   */
+  void putVerdict(Object key, UUID worldUUID, int x, int y, int z, int version, boolean passed) {
+    if (version != ChunkVersions.getVersion(worldUUID, x >> 4, z >> 4)) return;
+
+    Map<Long, ExpiringHashMap.Entry<SectionVerdicts>> sections =
+        VERDICTS.computeIfAbsent(new VerdictKey(key, worldUUID), k -> new ExpiringHashMap<>());
+
+    long sectionKey = ChunkUtils.getSectionKey(x >> 4, y >> 4, z >> 4);
+    ExpiringHashMap.Entry<SectionVerdicts> entry = sections.get(sectionKey);
+    if (entry == null || entry.getValue().version != version) {
+      entry = new ExpiringHashMap.Entry<>(new SectionVerdicts(version));
+      sections.put(sectionKey, entry);
+    }
+
+    entry.getValue().put(x, y, z, passed);
+  }
+
+  @Value
+  private static class VerdictKey {
+    Object key;
+    UUID worldUUID;
+  }
+
+  /** The verdicts for the 16x16x16 blocks of one section, two bits per block. */
+  private static final class SectionVerdicts {
+
+    private final int version;
+    private final AtomicLongArray bits = new AtomicLongArray(16 * 16 * 16 * 2 / Long.SIZE);
+
+    SectionVerdicts(int version) {
+      this.version = version;
+    }
+
+    int get(int x, int y, int z) {
+      int index = getIndex(x, y, z);
+      return (int) (bits.get(index >>> 5) >>> ((index & 31) * 2)) & 3;
+    }
+
+    void put(int x, int y, int z, boolean passed) {
+      int index = getIndex(x, y, z);
+      long verdict =
+          (long) (passed ? FilterVerdictCache.PASSED : FilterVerdictCache.FAILED)
+              << ((index & 31) * 2);
+
+      long previous;
+      do {
+        previous = bits.get(index >>> 5);
+      } while (!bits.compareAndSet(index >>> 5, previous, previous | verdict));
+    }
+
+    private static int getIndex(int x, int y, int z) {
+      return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+    }
+  }
+}
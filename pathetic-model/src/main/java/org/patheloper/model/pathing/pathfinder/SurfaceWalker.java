@@ -0,0 +1,142 @@
+package org.patheloper.model.pathing.pathfinder;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import org.patheloper.api.pathing.configuration.PathfinderConfiguration;
+import org.patheloper.api.pathing.configuration.SearchMode;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathPosition;
+
+/**
+ * Finds the neighbours of a block in {@link SearchMode#SURFACE} mode. A block is standable if the
+ * block below it is not passable and the entity fits into the passable blocks from it upwards.
+ *
+ * <p>The columns around the block are read with a single {@link
+ * SnapshotManager#getPassability} call, reaching from the ground of the deepest allowed drop up to
+ * the head room needed for the highest allowed step. Blocks which are not available count as not
+ * passable, so columns of unloaded chunks can't be entered.
+ */
+final class SurfaceWalker {
+
+  private static final int[][] DIRECTIONS = {
+    {1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}
+  };
+
+  private final int maxStepUp;
+  private final int maxJumpGap;
+  private final int height;
+  private final boolean allowingDiagonal;
+
+  /** The distance of the outermost columns read from the center column. */
+  private final int radius;
+
+  /** The height of the feet within the blocks read, everything below is ground or drop. */
+  private final int feet;
+
+  private final int sizeXZ;
+  private final int sizeY;
+
+  SurfaceWalker(PathfinderConfiguration pathfinderConfiguration) {
+    this.maxStepUp = Math.max(0, pathfinderConfiguration.getMaxStepUp());
+    this.maxJumpGap = Math.max(0, pathfinderConfiguration.getMaxJumpGap());
+    this.height = Math.max(1, pathfinderConfiguration.getEntityHeight());
+    this.allowingDiagonal = pathfinderConfiguration.isAllowingDiagonal();
+    this.radius = 1 + maxJumpGap;
+    this.feet = Math.max(0, pathfinderConfiguration.getMaxDrop()) + 1;
+    this.sizeXZ = 2 * radius + 1;
+    // a jump needs one more block of head room than walking
+    this.sizeY = feet + Math.max(maxStepUp, 1) + height;
+  }
+
+  /**
+   * @return the standable blocks reachable in a single move from the given one
+   */
+  List<PathPosition> getNeighbours(PathPosition position, SnapshotManager snapshotManager) {
+    BitSet passable = new BitSet(sizeXZ * sizeY * sizeXZ);
+    snapshotManager.getPassability(
+        position.add(-radius, -feet, -radius), sizeXZ, sizeY, sizeXZ, passable);
+
+    List<PathPosition> neighbours = new ArrayList<>(DIRECTIONS.length);
+    for (int[] direction : DIRECTIONS) {
+      int dx = direction[0];
+      int dz = direction[1];
+      boolean diagonal = dx != 0 && dz != 0;
+      if (diagonal && !allowingDiagonal) continue;
+
+      int landing = findLanding(passable, dx, dz);
+      if (landing >= 0 && diagonal && !areCornersClear(passable, dx, dz, landing)) continue;
+
+      int distance = 1;
+      if (landing < 0 && !diagonal && isPassable(passable, 0, 0, feet + height)) {
+        for (int gap = 1; gap <= maxJumpGap; gap++) {
+          if (!isClear(passable, gap * dx, gap * dz, feet, feet + height)) break;
+
+          landing = findDrop(passable, (gap + 1) * dx, (gap + 1) * dz);
+          if (landing >= 0) {
+            distance = gap + 1;
+            break;
+          }
+        }
+      }
+
+      if (landing >= 0)
+        neighbours.add(position.add(distance * dx, landing - feet, distance * dz));
+    }
+    return neighbours;
+  }
+
+  /**
+   * Finds the block the entity ends up in when moving into the neighbouring column, either by
+   * walking, dropping down or stepping up.
+   *
+   * @return the height of the block within the blocks read, or -1 if the move is not possible
+   */
+  private int findLanding(BitSet passable, int dx, int dz) {
+    int drop = findDrop(passable, dx, dz);
+    if (drop >= 0 || isClear(passable, dx, dz, feet, feet + height - 1)) return drop;
+
+    for (int step = 1; step <= maxStepUp; step++) {
+      // the head has to fit through above the current block while climbing
+      if (!isPassable(passable, 0, feet + height - 1 + step, 0)) return -1;
+
+      if (isClear(passable, dx, dz, feet + step, feet + step + height - 1)
+          && !isPassable(passable, dx, dz, feet + step - 1)) return feet + step;
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the block the entity drops to when walking into the column at the height of its feet.
+   *
+   * @return the height of the block within the blocks read, or -1 if the column is blocked or the
+   *     drop is too deep
+   */
+  private int findDrop(BitSet passable, int dx, int dz) {
+    if (!isClear(passable, dx, dz, feet, feet + height - 1)) return -1;
+
+    int landing = feet;
+    while (landing > 0 && isPassable(passable, dx, dz, landing - 1)) landing--;
+    return landing > 0 ? landing : -1;
+  }
+
+  /** Diagonal moves may not cut corners, the entity has to fit through both straight columns. */
+  private boolean areCornersClear(BitSet passable, int dx, int dz, int landing) {
+    int bottom = Math.max(feet, landing);
+    return isClear(passable, dx, 0, bottom, bottom + height - 1)
+        && isClear(passable, 0, dz, bottom, bottom + height - 1);
+  }
+
+  /** @return whether all blocks of the column between the given heights are passable */
+  private boolean isClear(BitSet passable, int dx, int dz, int bottom, int top) {
+    for (int y = bottom; y <= top; y++) {
+      if (!isPassable(passable, dx, dz, y)) return false;
+    }
+    return true;
+  }
+
+  private boolean isPassable(BitSet passable, int dx, int dz, int y) {
+    if (y < 0 || y >= sizeY) return false;
+    return passable.get((y * sizeXZ + dz + radius) * sizeXZ + dx + radius);
+  }
+}
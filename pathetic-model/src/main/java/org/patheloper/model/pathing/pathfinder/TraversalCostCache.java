@@ -0,0 +1,64 @@
+package org.patheloper.model.pathing.pathfinder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.patheloper.api.pathing.cost.PathCostProvider;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathEnvironment;
+import org.patheloper.util.ChunkUtils;
+
+/**
+ * Keeps the block costs of a {@link PathCostProvider} for the chunk sections a search has visited,
+ * one float per block, so that every block is weighed at most once per search. The section used
+ * last is kept at hand, since consecutive lookups mostly hit the same section.
+ *
+ * <p>Not thread-safe, a cache belongs to a single search.
+ */
+class TraversalCostCache {
+
+  private static final int SECTION_VOLUME = 16 * 16 * 16;
+
+  private final Map<Long, float[]> sections = new HashMap<>();
+
+  private long lastSectionKey;
+  private float[] lastSection;
+
+  /**
+   * @return the cost of the block, see {@link PathCostProvider#getCost}
+   */
+  double getCost(
+      int x,
+      int y,
+      int z,
+      PathEnvironment environment,
+      PathCostProvider costProvider,
+      SnapshotManager snapshotManager) {
+    long sectionKey = ChunkUtils.getSectionKey(x >> 4, y >> 4, z >> 4);
+    if (lastSection == null || sectionKey != lastSectionKey) {
+      lastSection = sections.computeIfAbsent(sectionKey, key -> newSection());
+      lastSectionKey = sectionKey;
+    }
+
+    int index = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    float cost = lastSection[index];
+    if (Float.isNaN(cost)) {
+      double providedCost = costProvider.getCost(x, y, z, environment, snapshotManager);
+      cost = Double.isNaN(providedCost) ? Float.POSITIVE_INFINITY : (float) providedCost;
+      cost = Math.max(0, cost);
+      lastSection[index] = cost;
+    }
+    return cost;
+  }
+
+  void clear() {
+    sections.clear();
+    lastSection = null;
+  }
+
+  private static float[] newSection() {
+    float[] section = new float[SECTION_VOLUME];
+    Arrays.fill(section, Float.NaN);
+    return section;
+  }
+}
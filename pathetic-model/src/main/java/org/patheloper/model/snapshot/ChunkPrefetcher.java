@@ -0,0 +1,87 @@
+package org.patheloper.model.snapshot;
+
+import java.util.HashSet;
+import java.util.Set;
+import lombok.experimental.UtilityClass;
+import org.patheloper.api.wrapper.PathEnvironment;
+import org.patheloper.api.wrapper.PathPosition;
+import org.patheloper.util.ChunkUtils;
+
+/**
+ * The ChunkPrefetcher issues asynchronous chunk loads ahead of a search. Chunks along the way to
+ * the target are therefore loaded in parallel, instead of one after another once the frontier of
+ * the search reaches them.
+ *
+ * <p>Prefetching never blocks, the loaded snapshots are picked up by the {@link
+ * FailingSnapshotManager.RequestingSnapshotManager} as soon as they are available.
+ */
+@UtilityClass
+public class ChunkPrefetcher {
+
+  /** The amount of chunks on each side of the corridor which are prefetched as well. */
+  private static final int CORRIDOR_RADIUS = 1;
+
+  /** The maximum amount of chunks requested for a corridor, so far targets don't flood the IO. */
+  private static final int MAX_CORRIDOR_CHUNKS = 64;
+
+  /** The amount of chunks ahead of the frontier which are prefetched during a search. */
+  private static final int LOOKAHEAD_CHUNKS = 2;
+
+  /**
+   * Prefetches the chunks along the straight line between start and target, widened by {@link
+   * #CORRIDOR_RADIUS} chunks to each side. Chunks closer to the start are requested first.
+   */
+  public void prefetchCorridor(PathPosition start, PathPosition target) {
+    int startChunkX = start.getBlockX() >> 4;
+    int startChunkZ = start.getBlockZ() >> 4;
+    int deltaX = (target.getBlockX() >> 4) - startChunkX;
+    int deltaZ = (target.getBlockZ() >> 4) - startChunkZ;
+    int steps = Math.max(Math.abs(deltaX), Math.abs(deltaZ));
+
+    Set<Long> requested = new HashSet<>();
+    for (int step = 0; step <= steps && requested.size() < MAX_CORRIDOR_CHUNKS; step++) {
+      double progress = steps == 0 ? 0 : (double) step / steps;
+      int chunkX = startChunkX + (int) Math.round(deltaX * progress);
+      int chunkZ = startChunkZ + (int) Math.round(deltaZ * progress);
+
+      for (int offsetX = -CORRIDOR_RADIUS; offsetX <= CORRIDOR_RADIUS; offsetX++)
+        for (int offsetZ = -CORRIDOR_RADIUS; offsetZ <= CORRIDOR_RADIUS; offsetZ++)
+          prefetch(start.getPathEnvironment(), chunkX + offsetX, chunkZ + offsetZ, requested);
+    }
+  }
+
+  /**
+   * Prefetches the chunks ahead of the frontier once it moves from one chunk into another. The
+   * direction of that move decides which chunks are requested: the next {@link #LOOKAHEAD_CHUNKS}
+   * chunks in that direction, together with their lateral neighbours.
+   *
+   * @param previous the position the frontier came from
+   * @param current the position the frontier is at now
+   */
+  public void prefetchAhead(PathPosition previous, PathPosition current) {
+    int fromChunkX = previous.getBlockX() >> 4;
+    int fromChunkZ = previous.getBlockZ() >> 4;
+    int toChunkX = current.getBlockX() >> 4;
+    int toChunkZ = current.getBlockZ() >> 4;
+
+    if (fromChunkX == toChunkX && fromChunkZ == toChunkZ) return;
+
+    int directionX = Integer.signum(toChunkX - fromChunkX);
+    int directionZ = Integer.signum(toChunkZ - fromChunkZ);
+
+    Set<Long> requested = new HashSet<>();
+    for (int distance = 1; distance <= LOOKAHEAD_CHUNKS; distance++) {
+      int chunkX = toChunkX + directionX * distance;
+      int chunkZ = toChunkZ + directionZ * distance;
+
+      prefetch(current.getPathEnvironment(), chunkX, chunkZ, requested);
+      prefetch(current.getPathEnvironment(), chunkX - directionZ, chunkZ + directionX, requested);
+      prefetch(current.getPathEnvironment(), chunkX + directionZ, chunkZ - directionX, requested);
+    }
+  }
+
+  private void prefetch(PathEnvironment environment, int chunkX, int chunkZ, Set<Long> requested) {
+    if (requested.add(ChunkUtils.getChunkKey(chunkX, chunkZ)))
+      FailingSnapshotManager.requestChunkSnapshot(environment, chunkX, chunkZ);
+  }
+}
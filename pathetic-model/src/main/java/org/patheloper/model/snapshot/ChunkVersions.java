@@ -0,0 +1,72 @@
+package org.patheloper.model.snapshot;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.experimental.UtilityClass;
+import org.patheloper.util.ChunkUtils;
+
+/**
+ * Tracks the modifications of chunks, so that anything derived from the blocks of a chunk can tell
+ * whether it is still up to date by comparing the version it was derived from with the current
+ * one.
+ *
+ * <p>The version of a chunk is bumped both when a block change is reported and once the outdated
+ * snapshot has actually been dropped, since the change may only be applied to the world after it
+ * has been reported.
+ *
+ * <p>Versions are drawn from a single clock, so the version of a chunk only ever grows. Only
+ * chunks modified since the last epoch of their world are tracked, all others share the version of
+ * that epoch. A new epoch starts once a world tracks too many chunks and when it is unloaded,
+ * which forgets the tracked chunks of that world and outdates everything derived from it.
+ */
+@UtilityClass
+public class ChunkVersions {
+
+  /** The number of modified chunks a world tracks before it starts a new epoch. */
+  private static final int MAX_TRACKED_CHUNKS = 1 << 16;
+
+  /** Only touched while holding the lock of this class. */
+  private static int clock;
+
+  private static final Map<UUID, WorldVersions> VERSIONS = new ConcurrentHashMap<>();
+
+  /** The version of all chunks of worlds which are not tracked. */
+  private static volatile int untrackedVersion;
+
+  /**
+   * @return the current version of the chunk
+   */
+  public int getVersion(UUID worldUUID, int chunkX, int chunkZ) {
+    WorldVersions versions = VERSIONS.get(worldUUID);
+    if (versions == null) return untrackedVersion;
+    return versions.chunks.getOrDefault(ChunkUtils.getChunkKey(chunkX, chunkZ), versions.epoch);
+  }
+
+  /** Gives the chunk a new version. */
+  public synchronized void bump(UUID worldUUID, long chunkKey) {
+    WorldVersions versions =
+        VERSIONS.computeIfAbsent(worldUUID, uuid -> new WorldVersions(untrackedVersion));
+    if (versions.chunks.size() >= MAX_TRACKED_CHUNKS) {
+      versions.epoch = ++clock;
+      versions.chunks.clear();
+    }
+    versions.chunks.put(chunkKey, ++clock);
+  }
+
+  /** Forgets the versions of the given world, e.g. because it got unloaded. */
+  public synchronized void drop(UUID worldUUID) {
+    untrackedVersion = ++clock;
+    VERSIONS.remove(worldUUID);
+  }
+
+  private static class WorldVersions {
+
+    private final Map<Long, Integer> chunks = new ConcurrentHashMap<>();
+    private volatile int epoch;
+
+    private WorldVersions(int epoch) {
+      this.epoch = epoch;
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package org.patheloper.model.snapshot;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.Material;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.util.MaterialMask;
+import org.patheloper.api.wrapper.PathEnvironment;
+import org.patheloper.api.wrapper.PathPosition;
+import org.patheloper.util.ChunkUtils;
+import org.patheloper.util.ExpiringHashMap;
+
+/**
+ * The ClearanceMap tells for every block of a chunk section how large an entity fits there, so
+ * that checking the size of an entity at a position takes a single byte comparison instead of
+ * reading every block of its volume.
+ *
+ * <p>For each block it holds the free height of its column, the amount of passable blocks from
+ * the block upwards, as well as the smallest free height within the 3x3 and 5x5 columns centered
+ * on it. An entity fits at a block if the free height of its footprint is at least its height.
+ * Even widths use the next larger odd footprint, so a 2 blocks wide entity is checked against the
+ * 3x3 columns around it.
+ *
+ * <p>Maps are computed once from a {@link SnapshotManager} and shared between searches. They are
+ * recomputed once any of the chunks they were read from has changed, as told by the {@link
+ * ChunkVersions}.
+ */
+public final class ClearanceMap {
+
+  /** The largest entity height the map can tell apart, taller entities are treated as this tall. */
+  public static final int MAX_HEIGHT = 16;
+
+  /** The largest entity width the map can tell apart, wider entities are treated as this wide. */
+  public static final int MAX_WIDTH = 5;
+
+  private static final int MARGIN = MAX_WIDTH / 2;
+  private static final int BOX_WIDTH = 16 + 2 * MARGIN;
+  private static final int BOX_HEIGHT = 16 + MAX_HEIGHT - 1;
+
+  private static final Map<UUID, Map<Long, ExpiringHashMap.Entry<ClearanceMap>>> MAPS =
+      new ConcurrentHashMap<>();
+
+  private final UUID worldUUID;
+  private final long sectionKey;
+  private final long version;
+
+  /** The free height per block, for footprints of 1x1, 3x3 and 5x5 columns. */
+  private final byte[][] clearances = new byte[MARGIN + 1][16 * 16 * 16];
+
+  private ClearanceMap(UUID worldUUID, long sectionKey, long version) {
+    this.worldUUID = worldUUID;
+    this.sectionKey = sectionKey;
+    this.version = version;
+  }
+
+  /**
+   * Gets the map of the section containing the given block, computing it if there is none yet or
+   * the cached one is outdated.
+   */
+  public static ClearanceMap getMap(
+      SnapshotManager snapshotManager, PathEnvironment environment, int x, int y, int z) {
+    Map<Long, ExpiringHashMap.Entry<ClearanceMap>> maps =
+        MAPS.computeIfAbsent(environment.getUuid(), uuid -> new ExpiringHashMap<>());
+
+    long sectionKey = ChunkUtils.getSectionKey(x >> 4, y >> 4, z >> 4);
+    long version = getVersion(environment.getUuid(), x >> 4, z >> 4);
+
+    ExpiringHashMap.Entry<ClearanceMap> entry = maps.get(sectionKey);
+    if (entry != null && entry.getValue().version == version) return entry.getValue();
+
+    ClearanceMap map = new ClearanceMap(environment.getUuid(), sectionKey, version);
+    boolean complete = map.compute(snapshotManager, environment, x >> 4, y >> 4, z >> 4);
+
+    // maps with blocks missing are only used once, so they are recomputed once those are there
+    if (complete && version == getVersion(environment.getUuid(), x >> 4, z >> 4))
+      maps.put(sectionKey, new ExpiringHashMap.Entry<>(map));
+    return map;
+  }
+
+  /**
+   * @return whether the section containing the given block is the one this map has been computed
+   *     for
+   */
+  public boolean covers(PathEnvironment environment, int x, int y, int z) {
+    return sectionKey == ChunkUtils.getSectionKey(x >> 4, y >> 4, z >> 4)
+        && environment.getUuid().equals(worldUUID);
+  }
+
+  /**
+   * Checks whether an entity of the given size, standing with its feet in the given block, has
+   * enough room there. Blocks which are not available count as not passable.
+   *
+   * @param width the width of the entity in blocks
+   * @param height the height of the entity in blocks
+   */
+  public boolean fits(int x, int y, int z, int width, int height) {
+    int radius = Math.min(width, MAX_WIDTH) / 2;
+    int index = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    return clearances[radius][index] >= Math.min(height, MAX_HEIGHT);
+  }
+
+  /** @return whether all blocks within the world could be read */
+  private boolean compute(
+      SnapshotManager snapshotManager,
+      PathEnvironment environment,
+      int sectionX,
+      int sectionY,
+      int sectionZ) {
+    int originX = (sectionX << 4) - MARGIN;
+    int originY = sectionY << 4;
+    int originZ = (sectionZ << 4) - MARGIN;
+
+    Material[] materials = new Material[BOX_WIDTH * BOX_HEIGHT * BOX_WIDTH];
+    snapshotManager.getMaterials(
+        new PathPosition(environment, originX, originY, originZ),
+        BOX_WIDTH,
+        BOX_HEIGHT,
+        BOX_WIDTH,
+        materials);
+
+    boolean complete = true;
+    byte[] columns = new byte[BOX_WIDTH * 16 * BOX_WIDTH];
+    for (int z = 0; z < BOX_WIDTH; z++)
+      for (int x = 0; x < BOX_WIDTH; x++) {
+        int free = 0;
+        for (int y = BOX_HEIGHT - 1; y >= 0; y--) {
+          Material material = materials[(y * BOX_WIDTH + z) * BOX_WIDTH + x];
+          if (material == null && isWithinWorld(environment, originY + y)) complete = false;
+
+          free = MaterialMask.PASSABLE.contains(material) ? Math.min(free + 1, MAX_HEIGHT) : 0;
+          if (y < 16) columns[(y * BOX_WIDTH + z) * BOX_WIDTH + x] = (byte) free;
+        }
+      }
+
+    for (int radius = 0; radius <= MARGIN; radius++)
+      for (int y = 0; y < 16; y++)
+        for (int z = 0; z < 16; z++)
+          for (int x = 0; x < 16; x++) {
+            int free = MAX_HEIGHT;
+            for (int dz = -radius; dz <= radius; dz++)
+              for (int dx = -radius; dx <= radius; dx++) {
+                int column = (y * BOX_WIDTH + z + MARGIN + dz) * BOX_WIDTH + x + MARGIN + dx;
+                free = Math.min(free, columns[column]);
+              }
+            clearances[radius][(y << 8) | (z << 4) | x] = (byte) free;
+          }
+
+    return complete;
+  }
+
+  private static boolean isWithinWorld(PathEnvironment environment, int y) {
+    return environment.getMinHeight() <= y && y < environment.getMaxHeight();
+  }
+
+  /**
+   * The map reads the neighbouring chunks as well, so its version is the sum of the versions of
+   * all chunks around it. Versions only ever grow, so the sum changes once any of them changes.
+   */
+  private static long getVersion(UUID worldUUID, int chunkX, int chunkZ) {
+    long version = 0;
+    for (int dx = -1; dx <= 1; dx++)
+      for (int dz = -1; dz <= 1; dz++)
+        version += ChunkVersions.getVersion(worldUUID, chunkX + dx, chunkZ + dz);
+    return version;
+  }
+}
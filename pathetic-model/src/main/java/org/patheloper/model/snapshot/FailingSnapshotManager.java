@@ -3,6 +3,8 @@ package org.patheloper.model.snapshot;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import lombok.NonNull;
 import org.bukkit.Bukkit;
 import org.bukkit.ChunkSnapshot;
@@ -14,6 +16,7 @@ import org.patheloper.api.wrapper.BlockInformation;
 import org.patheloper.api.wrapper.PathBlock;
 import org.patheloper.api.wrapper.PathEnvironment;
 import org.patheloper.api.wrapper.PathPosition;
+import org.patheloper.model.snapshot.region.NavigationCache;
 import org.patheloper.model.snapshot.world.WorldDomain;
 import org.patheloper.provider.ChunkDataProviderResolver;
 import org.patheloper.util.BukkitVersionUtil;
@@ -48,15 +51,54 @@ public class FailingSnapshotManager implements SnapshotManager {
         new ChunkDataProviderResolver((int) version.getMajor(), (int) version.getMinor());
   }
 
+  private static final SnapshotCaptureScheduler CAPTURE_SCHEDULER =
+      new SnapshotCaptureScheduler(CHUNK_DATA_PROVIDER_RESOLVER::getChunkDataProvider);
+
+  /**
+   * Marks the snapshot of the given chunk as outdated and bumps its {@link ChunkVersions version}.
+   * The invalidation is coalesced and applied once per tick by {@link #tick()}, or as soon as a
+   * search requests that chunk.
+   */
   public static void invalidateChunk(UUID worldUUID, int chunkX, int chunkZ) {
+    NavigationCache.invalidateChunk(worldUUID, chunkX, chunkZ);
+
+    long chunkKey = ChunkUtils.getChunkKey(chunkX, chunkZ);
+    ChunkVersions.bump(worldUUID, chunkKey);
+
     if (SNAPSHOTS_MAP.containsKey(worldUUID)) {
       WorldDomain worldDomain = SNAPSHOTS_MAP.get(worldUUID);
-      long chunkKey = ChunkUtils.getChunkKey(chunkX, chunkZ);
-
-      worldDomain.removeSnapshot(chunkKey);
+      worldDomain.markInvalid(chunkKey);
     }
   }
 
+  /**
+   * Drops the snapshots and chunk versions of the given world, e.g. because it got unloaded.
+   * Whatever was derived from its chunks is outdated afterwards.
+   */
+  public static void invalidateWorld(UUID worldUUID) {
+    SNAPSHOTS_MAP.remove(worldUUID);
+    ChunkVersions.drop(worldUUID);
+  }
+
+  /**
+   * Applies all pending chunk invalidations and services queued snapshot captures. Meant to be
+   * called once per tick on the main thread.
+   */
+  public static void tick() {
+    SNAPSHOTS_MAP.forEach(
+        (worldUUID, worldDomain) ->
+            worldDomain.flushInvalidations(chunkKey -> ChunkVersions.bump(worldUUID, chunkKey)));
+    CAPTURE_SCHEDULER.tick();
+  }
+
+  /**
+   * Sets the time in microseconds which may be spent per tick on capturing chunk snapshots on the
+   * main thread. Captures exceeding it are deferred to the following ticks.
+   */
+  public static void setCaptureBudget(long micros) {
+    CAPTURE_SCHEDULER.setTickBudget(micros);
+  }
+
   private static Optional<PathBlock> fetchBlock(PathPosition position) {
     Optional<ChunkSnapshot> chunkSnapshotOptional = getChunkSnapshot(position);
 
@@ -80,41 +122,101 @@ public class FailingSnapshotManager implements SnapshotManager {
   }
 
   private static Optional<ChunkSnapshot> getChunkSnapshot(PathPosition position) {
-    int chunkX = position.getBlockX() >> 4;
-    int chunkZ = position.getBlockZ() >> 4;
+    return getChunkSnapshot(
+        position.getPathEnvironment(), position.getBlockX() >> 4, position.getBlockZ() >> 4);
+  }
 
-    if (SNAPSHOTS_MAP.containsKey(position.getPathEnvironment().getUuid())) {
+  private static Optional<ChunkSnapshot> getChunkSnapshot(
+      PathEnvironment environment, int chunkX, int chunkZ) {
+    if (SNAPSHOTS_MAP.containsKey(environment.getUuid())) {
 
-      WorldDomain worldDomain = SNAPSHOTS_MAP.get(position.getPathEnvironment().getUuid());
+      WorldDomain worldDomain = SNAPSHOTS_MAP.get(environment.getUuid());
       long chunkKey = ChunkUtils.getChunkKey(chunkX, chunkZ);
 
       Optional<ChunkSnapshot> snapshot = worldDomain.getSnapshot(chunkKey);
       if (snapshot.isPresent()) return snapshot;
     }
 
-    World world = Bukkit.getWorld(position.getPathEnvironment().getUuid());
+    World world = Bukkit.getWorld(environment.getUuid());
     if (world == null) return Optional.empty();
 
     if (world.isChunkLoaded(chunkX, chunkZ))
       return Optional.ofNullable(
-          processChunkSnapshot(
-              position,
+          captureChunkSnapshot(
+              environment,
               chunkX,
               chunkZ,
-              CHUNK_DATA_PROVIDER_RESOLVER
-                  .getChunkDataProvider()
-                  .getSnapshot(world, chunkX, chunkZ)));
+              () -> CAPTURE_SCHEDULER.awaitCapture(world, chunkX, chunkZ)));
 
     return Optional.empty();
   }
 
-  private static ChunkSnapshot processChunkSnapshot(
-      PathPosition position, int chunkX, int chunkZ, ChunkSnapshot chunkSnapshot) {
+  /**
+   * @return the cached snapshot of the given chunk, without capturing it if there is none
+   */
+  static Optional<ChunkSnapshot> getCachedSnapshot(PathPosition position) {
+    WorldDomain worldDomain = SNAPSHOTS_MAP.get(position.getPathEnvironment().getUuid());
+    if (worldDomain == null) return Optional.empty();
+
+    return worldDomain.getSnapshot(
+        ChunkUtils.getChunkKey(position.getBlockX() >> 4, position.getBlockZ() >> 4));
+  }
+
+  /**
+   * Captures the snapshot of the given chunk and caches it. Concurrent captures of the same chunk
+   * are merged into one, all callers but the first wait for its result. The main thread never waits
+   * for another thread though, since that capture might itself be waiting for the main thread.
+   */
+  private static ChunkSnapshot captureChunkSnapshot(
+      PathEnvironment environment, int chunkX, int chunkZ, Supplier<ChunkSnapshot> capturer) {
     WorldDomain worldDomain =
-        SNAPSHOTS_MAP.computeIfAbsent(
-            position.getPathEnvironment().getUuid(), uuid -> new WorldDomain());
-    worldDomain.addSnapshot(ChunkUtils.getChunkKey(chunkX, chunkZ), chunkSnapshot);
-    return chunkSnapshot;
+        SNAPSHOTS_MAP.computeIfAbsent(environment.getUuid(), uuid -> new WorldDomain());
+    return worldDomain.captureSnapshot(
+        ChunkUtils.getChunkKey(chunkX, chunkZ), capturer, !Bukkit.isPrimaryThread());
+  }
+
+  /**
+   * Requests the snapshot of the given chunk without blocking. If the chunk is not loaded yet, it
+   * will be loaded asynchronously. The capture itself is queued with the {@link
+   * SnapshotCaptureScheduler}, so that many requests don't all end up in the same tick. Requests
+   * for a chunk which is already being loaded share the running load.
+   */
+  static CompletableFuture<ChunkSnapshot> requestChunkSnapshot(
+      PathEnvironment environment, int chunkX, int chunkZ) {
+    WorldDomain worldDomain =
+        SNAPSHOTS_MAP.computeIfAbsent(environment.getUuid(), uuid -> new WorldDomain());
+    long chunkKey = ChunkUtils.getChunkKey(chunkX, chunkZ);
+
+    Optional<ChunkSnapshot> snapshot = worldDomain.getSnapshot(chunkKey);
+    if (snapshot.isPresent()) return CompletableFuture.completedFuture(snapshot.get());
+
+    World world = Bukkit.getWorld(environment.getUuid());
+    if (world == null) return CompletableFuture.completedFuture(null);
+
+    return worldDomain.requestSnapshot(
+        chunkKey, () -> CAPTURE_SCHEDULER.requestCapture(world, chunkX, chunkZ));
+  }
+
+  /**
+   * Checks whether the chunk of the given position can be read without waiting for it to be loaded.
+   * If it can't, an asynchronous load is requested and returned, so that the caller can do other
+   * work until the chunk is available.
+   *
+   * @return the pending load, or empty if the chunk is available right away
+   */
+  public static Optional<CompletableFuture<ChunkSnapshot>> requestIfMissing(
+      PathPosition position) {
+    int chunkX = position.getBlockX() >> 4;
+    int chunkZ = position.getBlockZ() >> 4;
+
+    WorldDomain worldDomain = SNAPSHOTS_MAP.get(position.getPathEnvironment().getUuid());
+    if (worldDomain != null && worldDomain.containsSnapshot(ChunkUtils.getChunkKey(chunkX, chunkZ)))
+      return Optional.empty();
+
+    World world = Bukkit.getWorld(position.getPathEnvironment().getUuid());
+    if (world == null || world.isChunkLoaded(chunkX, chunkZ)) return Optional.empty();
+
+    return Optional.of(requestChunkSnapshot(position.getPathEnvironment(), chunkX, chunkZ));
   }
 
   @Override
@@ -123,6 +225,71 @@ public class FailingSnapshotManager implements SnapshotManager {
     return block.orElse(null);
   }
 
+  /**
+   * Reads the material straight from the chunk snapshot, without resolving the block state. Blocks
+   * of chunks without a snapshot are read through {@link #getBlock}, like for bulk reads.
+   */
+  @Override
+  public Material getMaterial(@NonNull PathEnvironment environment, int x, int y, int z) {
+    if (y < environment.getMinHeight() || y >= environment.getMaxHeight()) return null;
+
+    Optional<ChunkSnapshot> snapshot = resolveChunkSnapshot(environment, x >> 4, z >> 4);
+    if (snapshot.isPresent()) return ChunkUtils.getMaterial(snapshot.get(), x & 15, y, z & 15);
+
+    PathBlock block = getBlock(environment, x, y, z);
+    return block == null ? null : block.getBlockInformation().getMaterial();
+  }
+
+  /**
+   * Reads the materials chunk by chunk, so that each chunk of the box is only resolved once. Blocks
+   * of chunks without a snapshot are read one by one through {@link #getBlock}, which subclasses
+   * might be able to serve from elsewhere.
+   */
+  @Override
+  public void getMaterials(
+      @NonNull PathPosition origin, int sizeX, int sizeY, int sizeZ, Material[] materials) {
+    PathEnvironment environment = origin.getPathEnvironment();
+    int minX = origin.getBlockX();
+    int minY = origin.getBlockY();
+    int minZ = origin.getBlockZ();
+    int maxX = minX + sizeX;
+    int maxZ = minZ + sizeZ;
+    int fromY = Math.max(minY, environment.getMinHeight());
+    int toY = Math.min(minY + sizeY, environment.getMaxHeight());
+
+    for (int chunkX = minX >> 4; chunkX <= (maxX - 1) >> 4; chunkX++)
+      for (int chunkZ = minZ >> 4; chunkZ <= (maxZ - 1) >> 4; chunkZ++) {
+        Optional<ChunkSnapshot> snapshot = resolveChunkSnapshot(environment, chunkX, chunkZ);
+        int fromX = Math.max(minX, chunkX << 4);
+        int toX = Math.min(maxX, (chunkX << 4) + 16);
+        int fromZ = Math.max(minZ, chunkZ << 4);
+        int toZ = Math.min(maxZ, (chunkZ << 4) + 16);
+
+        for (int y = minY; y < minY + sizeY; y++)
+          for (int z = fromZ; z < toZ; z++)
+            for (int x = fromX; x < toX; x++) {
+              int index = ((y - minY) * sizeZ + (z - minZ)) * sizeX + (x - minX);
+              if (y < fromY || y >= toY) materials[index] = null;
+              else if (snapshot.isPresent())
+                materials[index] = ChunkUtils.getMaterial(snapshot.get(), x & 15, y, z & 15);
+              else {
+                PathBlock block = getBlock(new PathPosition(environment, x, y, z));
+                materials[index] =
+                    block == null ? null : block.getBlockInformation().getMaterial();
+              }
+            }
+      }
+  }
+
+  /**
+   * Resolves the snapshot of the given chunk for bulk reads. By default, only chunks which are
+   * cached or loaded are resolved.
+   */
+  protected Optional<ChunkSnapshot> resolveChunkSnapshot(
+      PathEnvironment environment, int chunkX, int chunkZ) {
+    return getChunkSnapshot(environment, chunkX, chunkZ);
+  }
+
   /**
    * The RequestingSnapshotManager is an inner class of FailingSnapshotManager, extending it. This
    * class provides additional functionality for ensuring that block data snapshots are available,
@@ -133,26 +300,37 @@ public class FailingSnapshotManager implements SnapshotManager {
     private static ChunkSnapshot retrieveChunkSnapshot(
         PathEnvironment world, int chunkX, int chunkZ) {
       World bukkitWorld = Bukkit.getWorld(world.getUuid());
-      return CHUNK_DATA_PROVIDER_RESOLVER
-          .getChunkDataProvider()
-          .getSnapshot(bukkitWorld, chunkX, chunkZ);
+
+      // the chunk might get unloaded again before its queued capture is serviced
+      ChunkSnapshot snapshot;
+      do {
+        snapshot = CAPTURE_SCHEDULER.awaitCapture(bukkitWorld, chunkX, chunkZ);
+      } while (snapshot == null && !Bukkit.isPrimaryThread());
+      return snapshot;
     }
 
     private static ChunkSnapshot retrieveSnapshot(PathPosition position) {
-      int chunkX = position.getBlockX() >> 4;
-      int chunkZ = position.getBlockZ() >> 4;
+      return retrieveSnapshot(
+          position.getPathEnvironment(), position.getBlockX() >> 4, position.getBlockZ() >> 4);
+    }
 
-      Optional<ChunkSnapshot> chunkSnapshotOptional = getChunkSnapshot(position);
+    private static ChunkSnapshot retrieveSnapshot(
+        PathEnvironment environment, int chunkX, int chunkZ) {
+      Optional<ChunkSnapshot> chunkSnapshotOptional =
+          getChunkSnapshot(environment, chunkX, chunkZ);
 
       return chunkSnapshotOptional.orElseGet(
           () -> {
             ChunkSnapshot chunkSnapshot =
-                retrieveChunkSnapshot(position.getPathEnvironment(), chunkX, chunkZ);
+                captureChunkSnapshot(
+                    environment,
+                    chunkX,
+                    chunkZ,
+                    () -> retrieveChunkSnapshot(environment, chunkX, chunkZ));
 
             if (chunkSnapshot == null)
               throw ErrorLogger.logFatalError("Could not retrieve chunk snapshot --> BOOM!");
 
-            processChunkSnapshot(position, chunkX, chunkZ, chunkSnapshot);
             return chunkSnapshot;
           });
     }
@@ -178,5 +356,11 @@ public class FailingSnapshotManager implements SnapshotManager {
       PathBlock block = super.getBlock(position);
       return block == null ? ensureBlock(position) : block;
     }
+
+    @Override
+    protected Optional<ChunkSnapshot> resolveChunkSnapshot(
+        PathEnvironment environment, int chunkX, int chunkZ) {
+      return Optional.of(retrieveSnapshot(environment, chunkX, chunkZ));
+    }
   }
 }
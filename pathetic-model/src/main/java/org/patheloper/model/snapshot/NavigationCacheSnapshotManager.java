@@ -0,0 +1,53 @@
+package org.patheloper.model.snapshot;
+
+import java.util.Optional;
+import lombok.NonNull;
+import org.bukkit.ChunkSnapshot;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathBlock;
+import org.patheloper.api.wrapper.PathPosition;
+import org.patheloper.model.snapshot.region.NavigationCache;
+import org.patheloper.model.snapshot.region.RegionChunk;
+
+/**
+ * The NavigationCacheSnapshotManager serves chunks from the persistent {@link NavigationCache}
+ * before asking the wrapped manager, which would have to capture them. Chunks captured by the
+ * wrapped manager are written to the cache in turn, so they are available right away after the
+ * next restart.
+ *
+ * <p>Chunks with a cached live snapshot are always read from that snapshot. Blocks served from the
+ * navigation cache carry no {@link org.bukkit.block.BlockState}.
+ */
+public class NavigationCacheSnapshotManager implements SnapshotManager {
+
+  private final SnapshotManager snapshotManager;
+
+  /**
+   * @param snapshotManager the manager to ask for chunks which are not in the navigation cache
+   */
+  public NavigationCacheSnapshotManager(SnapshotManager snapshotManager) {
+    this.snapshotManager = snapshotManager;
+  }
+
+  @Override
+  public PathBlock getBlock(@NonNull PathPosition position) {
+    if (FailingSnapshotManager.getCachedSnapshot(position).isPresent())
+      return snapshotManager.getBlock(position);
+
+    int chunkX = position.getBlockX() >> 4;
+    int chunkZ = position.getBlockZ() >> 4;
+    Optional<NavigationCache> navigationCache =
+        NavigationCache.forWorld(position.getPathEnvironment().getUuid());
+    if (!navigationCache.isPresent()) return snapshotManager.getBlock(position);
+
+    Optional<RegionChunk> chunk = navigationCache.get().getChunk(chunkX, chunkZ);
+    if (chunk.isPresent()) return chunk.get().getBlock(position);
+
+    PathBlock block = snapshotManager.getBlock(position);
+
+    Optional<ChunkSnapshot> snapshot = FailingSnapshotManager.getCachedSnapshot(position);
+    if (snapshot.isPresent()) navigationCache.get().store(chunkX, chunkZ, snapshot.get());
+
+    return block;
+  }
+}
@@ -0,0 +1,292 @@
+package org.patheloper.model.snapshot;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.experimental.UtilityClass;
+import org.bukkit.Material;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.util.MaterialMask;
+import org.patheloper.api.wrapper.PathEnvironment;
+import org.patheloper.api.wrapper.PathPosition;
+import org.patheloper.util.ChunkUtils;
+import org.patheloper.util.ExpiringHashMap;
+
+/**
+ * The ReachabilityIndex tells whether two blocks are certainly not connected by passable blocks,
+ * which allows rejecting searches towards sealed off targets right away instead of running them
+ * until they give up.
+ *
+ * <p>The passable blocks of each chunk section are labelled with the connected component they
+ * belong to, treating blocks as connected if they touch in any of the 26 directions. Labels are
+ * shared between searches and recomputed once their chunk has moved on to another {@link
+ * ChunkVersions version}. A query walks the graph of components across section borders, starting
+ * from the target and then from the start, until it either finds the other block, runs out of
+ * components, which proves the blocks unreachable, or exceeds its budget.
+ *
+ * <p>The answer is conservative. Sections which can't be read, e.g. because their chunk is not
+ * loaded, and queries exceeding their budget count as reachable.
+ */
+@UtilityClass
+public class ReachabilityIndex {
+
+  /** The maximum amount of components a single walk visits before it gives up. */
+  private static final int MAX_VISITED_COMPONENTS = 128;
+
+  private static final int SECTION_VOLUME = 16 * 16 * 16;
+
+  private static final Map<UUID, Map<Long, ExpiringHashMap.Entry<SectionComponents>>> SECTIONS =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Checks whether the given blocks are certainly not connected through passable blocks. Only
+   * meaningful for searches which never path through solid blocks.
+   *
+   * @param snapshotManager the manager to read sections through, should not load chunks
+   * @return true if the blocks are proven to be unreachable from each other
+   */
+  public boolean isProvenUnreachable(
+      SnapshotManager snapshotManager, PathPosition start, PathPosition target) {
+    PathEnvironment environment = start.getPathEnvironment();
+    return walk(snapshotManager, environment, target.floor(), start.floor()) == Walk.EXHAUSTED
+        && walk(snapshotManager, environment, start.floor(), target.floor()) == Walk.EXHAUSTED;
+  }
+
+  private enum Walk {
+    FOUND,
+    EXHAUSTED,
+    UNKNOWN
+  }
+
+  /** Walks the components reachable from the origin, looking for the component of the goal. */
+  private Walk walk(
+      SnapshotManager snapshotManager,
+      PathEnvironment environment,
+      PathPosition origin,
+      PathPosition goal) {
+    SectionLookup lookup = new SectionLookup(snapshotManager, environment);
+
+    SectionComponents originSection = lookup.get(origin);
+    SectionComponents goalSection = lookup.get(goal);
+    if (originSection == null || goalSection == null) return Walk.UNKNOWN;
+
+    int originLabel = originSection.getLabel(origin);
+    int goalLabel = goalSection.getLabel(goal);
+    if (originLabel == 0 || goalLabel == 0) return Walk.UNKNOWN;
+
+    long goalSectionKey = getSectionKey(goal);
+    Map<Long, BitSet> visited = new HashMap<>();
+    ArrayDeque<long[]> queue = new ArrayDeque<>();
+    queue.add(new long[] {getSectionKey(origin), originLabel});
+    visited.computeIfAbsent(getSectionKey(origin), k -> new BitSet()).set(originLabel);
+
+    int visitedComponents = 0;
+    while (!queue.isEmpty()) {
+      long[] component = queue.poll();
+      long sectionKey = component[0];
+      int label = (int) component[1];
+      if (sectionKey == goalSectionKey && label == goalLabel) return Walk.FOUND;
+      if (++visitedComponents > MAX_VISITED_COMPONENTS) return Walk.UNKNOWN;
+
+      if (!expand(lookup, sectionKey, label, visited, queue)) return Walk.UNKNOWN;
+    }
+    return Walk.EXHAUSTED;
+  }
+
+  /**
+   * Queues all unvisited components of the neighbouring sections touching the given component.
+   *
+   * @return false if the component touches a section which can't be read
+   */
+  private boolean expand(
+      SectionLookup lookup,
+      long sectionKey,
+      int label,
+      Map<Long, BitSet> visited,
+      ArrayDeque<long[]> queue) {
+    int sectionX = ChunkUtils.getSectionX(sectionKey);
+    int sectionY = ChunkUtils.getSectionY(sectionKey);
+    int sectionZ = ChunkUtils.getSectionZ(sectionKey);
+    SectionComponents section = lookup.get(sectionX, sectionY, sectionZ);
+
+    for (int y = 0; y < 16; y++)
+      for (int z = 0; z < 16; z++)
+        for (int x = 0; x < 16; x++) {
+          boolean border = x == 0 || x == 15 || y == 0 || y == 15 || z == 0 || z == 15;
+          if (!border || section.labels[getIndex(x, y, z)] != label) continue;
+
+          for (int dy = -1; dy <= 1; dy++)
+            for (int dz = -1; dz <= 1; dz++)
+              for (int dx = -1; dx <= 1; dx++) {
+                int nx = x + dx;
+                int ny = y + dy;
+                int nz = z + dz;
+                if ((nx & 15) == nx && (ny & 15) == ny && (nz & 15) == nz) continue;
+
+                int neighbourY = sectionY + (ny >> 4);
+                if (!lookup.isWithinWorld(neighbourY)) continue;
+
+                int neighbourX = sectionX + (nx >> 4);
+                int neighbourZ = sectionZ + (nz >> 4);
+                SectionComponents neighbour = lookup.get(neighbourX, neighbourY, neighbourZ);
+                if (neighbour == null) return false;
+
+                int neighbourLabel = neighbour.labels[getIndex(nx & 15, ny & 15, nz & 15)];
+                if (neighbourLabel == 0) continue;
+
+                long neighbourKey = ChunkUtils.getSectionKey(neighbourX, neighbourY, neighbourZ);
+                BitSet labels = visited.computeIfAbsent(neighbourKey, k -> new BitSet());
+                if (!labels.get(neighbourLabel)) {
+                  labels.set(neighbourLabel);
+                  queue.add(new long[] {neighbourKey, neighbourLabel});
+                }
+              }
+        }
+    return true;
+  }
+
+  /** Resolves the components of sections, remembering them for the duration of one walk. */
+  private static final class SectionLookup {
+
+    private final SnapshotManager snapshotManager;
+    private final PathEnvironment environment;
+    private final Map<Long, ExpiringHashMap.Entry<SectionComponents>> sharedSections;
+    private final Map<Long, SectionComponents> sections = new HashMap<>();
+
+    SectionLookup(SnapshotManager snapshotManager, PathEnvironment environment) {
+      this.snapshotManager = snapshotManager;
+      this.environment = environment;
+      this.sharedSections =
+          SECTIONS.computeIfAbsent(environment.getUuid(), uuid -> new ExpiringHashMap<>());
+    }
+
+    boolean isWithinWorld(int sectionY) {
+      return environment.getMinHeight() >> 4 <= sectionY
+          && sectionY <= (environment.getMaxHeight() - 1) >> 4;
+    }
+
+    SectionComponents get(PathPosition position) {
+      return get(position.getBlockX() >> 4, position.getBlockY() >> 4, position.getBlockZ() >> 4);
+    }
+
+    /**
+     * @return the components of the section, or null if it can't be read
+     */
+    SectionComponents get(int sectionX, int sectionY, int sectionZ) {
+      long sectionKey = ChunkUtils.getSectionKey(sectionX, sectionY, sectionZ);
+      if (sections.containsKey(sectionKey)) return sections.get(sectionKey);
+
+      int version = ChunkVersions.getVersion(environment.getUuid(), sectionX, sectionZ);
+      ExpiringHashMap.Entry<SectionComponents> entry = sharedSections.get(sectionKey);
+
+      SectionComponents section;
+      if (entry != null && entry.getValue().version == version) {
+        section = entry.getValue();
+      } else {
+        section =
+            SectionComponents.compute(
+                snapshotManager, environment, sectionX, sectionY, sectionZ, version);
+        if (section != null)
+          sharedSections.put(sectionKey, new ExpiringHashMap.Entry<>(section));
+      }
+
+      sections.put(sectionKey, section);
+      return section;
+    }
+  }
+
+  /** The connected components of the passable blocks within one section. */
+  private static final class SectionComponents {
+
+    private final int version;
+
+    /** The component of each block, 0 for blocks which are not passable. */
+    private final short[] labels;
+
+    private SectionComponents(int version, short[] labels) {
+      this.version = version;
+      this.labels = labels;
+    }
+
+    int getLabel(PathPosition position) {
+      int x = position.getBlockX() & 15;
+      int y = position.getBlockY() & 15;
+      int z = position.getBlockZ() & 15;
+      return labels[getIndex(x, y, z)];
+    }
+
+    /**
+     * @return the labelled section, or null if any of its blocks within the world can't be read
+     */
+    static SectionComponents compute(
+        SnapshotManager snapshotManager,
+        PathEnvironment environment,
+        int sectionX,
+        int sectionY,
+        int sectionZ,
+        int version) {
+      Material[] materials = new Material[SECTION_VOLUME];
+      snapshotManager.getMaterials(
+          new PathPosition(environment, sectionX << 4, sectionY << 4, sectionZ << 4),
+          16,
+          16,
+          16,
+          materials);
+
+      BitSet passable = new BitSet(SECTION_VOLUME);
+      for (int i = 0; i < SECTION_VOLUME; i++) {
+        int y = (sectionY << 4) + (i >> 8);
+        if (materials[i] == null
+            && environment.getMinHeight() <= y
+            && y < environment.getMaxHeight()) return null;
+        passable.set(i, MaterialMask.PASSABLE.contains(materials[i]));
+      }
+
+      short[] labels = new short[SECTION_VOLUME];
+      int[] queue = new int[SECTION_VOLUME];
+      short nextLabel = 0;
+      for (int start = passable.nextSetBit(0); start >= 0; start = passable.nextSetBit(start + 1)) {
+        if (labels[start] != 0) continue;
+
+        short label = ++nextLabel;
+        labels[start] = label;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+          int index = queue[head++];
+          int x = index & 15;
+          int z = (index >> 4) & 15;
+          int y = index >> 8;
+
+          for (int dy = -1; dy <= 1; dy++)
+            for (int dz = -1; dz <= 1; dz++)
+              for (int dx = -1; dx <= 1; dx++) {
+                int nx = x + dx;
+                int ny = y + dy;
+                int nz = z + dz;
+                if ((nx & 15) != nx || (ny & 15) != ny || (nz & 15) != nz) continue;
+
+                int neighbour = getIndex(nx, ny, nz);
+                if (labels[neighbour] != 0 || !passable.get(neighbour)) continue;
+                labels[neighbour] = label;
+                queue[tail++] = neighbour;
+              }
+        }
+      }
+      return new SectionComponents(version, labels);
+    }
+  }
+
+  private static int getIndex(int x, int y, int z) {
+    return (y << 8) | (z << 4) | x;
+  }
+
+  private static long getSectionKey(PathPosition position) {
+    return ChunkUtils.getSectionKey(
+        position.getBlockX() >> 4, position.getBlockY() >> 4, position.getBlockZ() >> 4);
+  }
+}
@@ -0,0 +1,50 @@
+package org.patheloper.model.snapshot;
+
+import java.util.Optional;
+import javax.annotation.Nullable;
+import lombok.NonNull;
+import org.patheloper.api.snapshot.SnapshotManager;
+import org.patheloper.api.wrapper.PathBlock;
+import org.patheloper.api.wrapper.PathPosition;
+import org.patheloper.model.snapshot.region.RegionChunk;
+import org.patheloper.model.snapshot.region.RegionFileStorage;
+
+/**
+ * The RegionFileSnapshotManager reads chunks which are not loaded straight from the region files of
+ * the world, instead of having the server load or even generate them. Chunks which are loaded or
+ * already cached are still read from their live snapshot, since the region files lag behind them.
+ *
+ * <p>Blocks read from region files carry no {@link org.bukkit.block.BlockState}, since that would
+ * require the chunk to be loaded.
+ *
+ * <p>Chunks which are not saved in the region files yet are handed to the fallback manager, if
+ * there is one.
+ */
+public class RegionFileSnapshotManager extends FailingSnapshotManager {
+
+  @Nullable private final SnapshotManager fallbackSnapshotManager;
+
+  /**
+   * @param fallbackSnapshotManager the manager to ask for blocks of chunks which are neither loaded
+   *     nor saved in the region files, or null to treat them as not available
+   */
+  public RegionFileSnapshotManager(@Nullable SnapshotManager fallbackSnapshotManager) {
+    this.fallbackSnapshotManager = fallbackSnapshotManager;
+  }
+
+  @Override
+  public PathBlock getBlock(@NonNull PathPosition position) {
+    PathBlock block = super.getBlock(position);
+    if (block != null) return block;
+
+    Optional<RegionChunk> chunk = readChunk(position);
+    if (chunk.isPresent()) return chunk.get().getBlock(position);
+
+    return fallbackSnapshotManager == null ? null : fallbackSnapshotManager.getBlock(position);
+  }
+
+  private static Optional<RegionChunk> readChunk(PathPosition position) {
+    return RegionFileStorage.forWorld(position.getPathEnvironment().getUuid())
+        .flatMap(storage -> storage.getChunk(position.getBlockX() >> 4, position.getBlockZ() >> 4));
+  }
+}
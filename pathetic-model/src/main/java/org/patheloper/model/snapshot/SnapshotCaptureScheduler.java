@@ -0,0 +1,179 @@
+package org.patheloper.model.snapshot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.AllArgsConstructor;
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.patheloper.api.snapshot.ChunkDataProvider;
+
+/**
+ * The SnapshotCaptureScheduler spreads chunk snapshot captures over several ticks. Captures can be
+ * requested from any thread, they are queued and serviced on the main thread once per tick, until
+ * the configured time budget of that tick is used up. Whatever is left over is carried to the next
+ * tick.
+ *
+ * <p>Queued captures are sorted so that neighbouring chunks are captured right after each other,
+ * and several requests for the same chunk share a single capture.
+ *
+ * <p>Searches which need a chunk before they can go on wait for its queued capture, wherever
+ * they run. Only the main thread captures right away, since it can't wait for its own tick, and
+ * the time it takes is charged against the budget of the next tick.
+ */
+class SnapshotCaptureScheduler {
+
+  /** Chunks are grouped into squares of 4x4 chunks, which are captured one after another. */
+  private static final int GROUP_SHIFT = 2;
+
+  private static final Comparator<CaptureRequest> CAPTURE_ORDER =
+      Comparator.comparing((CaptureRequest request) -> request.world.getUID())
+          .thenComparingInt(request -> request.chunkX >> GROUP_SHIFT)
+          .thenComparingInt(request -> request.chunkZ >> GROUP_SHIFT)
+          .thenComparingInt(request -> request.chunkX)
+          .thenComparingInt(request -> request.chunkZ);
+
+  private final Supplier<ChunkDataProvider> chunkDataProvider;
+
+  private final Queue<CaptureRequest> incomingRequests = new ConcurrentLinkedQueue<>();
+
+  /** Requests left over from previous ticks. Only touched by the main thread. */
+  private final List<CaptureRequest> backlog = new ArrayList<>();
+
+  private volatile long tickBudgetNanos = TimeUnit.MILLISECONDS.toNanos(2);
+
+  /** The time spent on immediate captures since the last tick. Only touched by the main thread. */
+  private long spentNanos;
+
+  SnapshotCaptureScheduler(Supplier<ChunkDataProvider> chunkDataProvider) {
+    this.chunkDataProvider = chunkDataProvider;
+  }
+
+  /** Sets the time in microseconds the scheduler may spend on captures per tick. */
+  void setTickBudget(long micros) {
+    if (micros <= 0) throw new IllegalArgumentException("The tick budget must be positive");
+    this.tickBudgetNanos = TimeUnit.MICROSECONDS.toNanos(micros);
+  }
+
+  /**
+   * Queues the capture of the given chunk. If the chunk is not loaded yet, it is loaded
+   * asynchronously first and queued once the load has completed.
+   *
+   * @return a future completed with the captured snapshot on the main thread
+   */
+  CompletableFuture<ChunkSnapshot> requestCapture(World world, int chunkX, int chunkZ) {
+    if (world.isChunkLoaded(chunkX, chunkZ)) return enqueue(world, chunkX, chunkZ);
+
+    return chunkDataProvider
+        .get()
+        .loadChunkAsync(world, chunkX, chunkZ)
+        .thenCompose(loaded -> enqueue(world, chunkX, chunkZ));
+  }
+
+  /**
+   * Captures the given chunk and waits for the result. On the main thread the chunk is captured
+   * right away, see {@link #captureNow(World, int, int)}. Any other thread queues the capture like
+   * {@link #requestCapture(World, int, int)} and waits for it to be serviced, so that captures
+   * stay within the budget no matter which thread asks for them.
+   *
+   * @return the captured snapshot, or null if the chunk got unloaded before it could be captured
+   */
+  ChunkSnapshot awaitCapture(World world, int chunkX, int chunkZ) {
+    if (!Bukkit.isPrimaryThread()) return requestCapture(world, chunkX, chunkZ).join();
+    return captureNow(world, chunkX, chunkZ);
+  }
+
+  /**
+   * Captures the given chunk right away on the main thread. The time the capture takes is charged
+   * against the budget of the next tick.
+   */
+  private ChunkSnapshot captureNow(World world, int chunkX, int chunkZ) {
+    long start = System.nanoTime();
+    try {
+      return chunkDataProvider.get().getSnapshot(world, chunkX, chunkZ);
+    } finally {
+      spentNanos += System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * Services queued captures until the budget of this tick is used up. At least one chunk is
+   * captured per tick, so the queue always makes progress. Must be called on the main thread.
+   */
+  void tick() {
+    CaptureRequest request;
+    boolean added = false;
+    while ((request = incomingRequests.poll()) != null) {
+      backlog.add(request);
+      added = true;
+    }
+
+    long budget = tickBudgetNanos - spentNanos;
+    spentNanos = 0;
+    if (backlog.isEmpty()) return;
+    if (added) backlog.sort(CAPTURE_ORDER);
+
+    long deadline = System.nanoTime() + budget;
+    int serviced = 0;
+    do {
+      serviced = captureGroup(serviced);
+    } while (serviced < backlog.size() && System.nanoTime() < deadline);
+
+    backlog.subList(0, serviced).clear();
+  }
+
+  /**
+   * Captures the chunk of the request at the given index and completes it, together with all
+   * following requests for the same chunk.
+   *
+   * @return the index of the first request for another chunk
+   */
+  private int captureGroup(int index) {
+    CaptureRequest first = backlog.get(index);
+    int end = index + 1;
+    while (end < backlog.size() && backlog.get(end).isSameChunk(first)) end++;
+
+    try {
+      ChunkSnapshot snapshot = capture(first);
+      for (int i = index; i < end; i++) backlog.get(i).future.complete(snapshot);
+    } catch (RuntimeException e) {
+      for (int i = index; i < end; i++) backlog.get(i).future.completeExceptionally(e);
+    }
+    return end;
+  }
+
+  /**
+   * Captures the chunk of the request. Chunks which got unloaded while the request was queued are
+   * not loaded on the main thread, but yield no snapshot, so that the caller falls back to its
+   * usual way of retrieving the chunk.
+   */
+  private ChunkSnapshot capture(CaptureRequest request) {
+    if (!request.world.isChunkLoaded(request.chunkX, request.chunkZ)) return null;
+    return chunkDataProvider.get().getSnapshot(request.world, request.chunkX, request.chunkZ);
+  }
+
+  private CompletableFuture<ChunkSnapshot> enqueue(World world, int chunkX, int chunkZ) {
+    CaptureRequest request = new CaptureRequest(world, chunkX, chunkZ, new CompletableFuture<>());
+    incomingRequests.add(request);
+    return request.future;
+  }
+
+  @AllArgsConstructor
+  private static class CaptureRequest {
+
+    private final World world;
+    private final int chunkX;
+    private final int chunkZ;
+    private final CompletableFuture<ChunkSnapshot> future;
+
+    private boolean isSameChunk(CaptureRequest other) {
+      return world.equals(other.world) && chunkX == other.chunkX && chunkZ == other.chunkZ;
+    }
+  }
+}
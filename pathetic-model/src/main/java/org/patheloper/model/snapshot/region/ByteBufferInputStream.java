@@ -0,0 +1,28 @@
+package org.patheloper.model.snapshot.region;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/** Reads the remaining bytes of a {@link ByteBuffer}, advancing its position. */
+final class ByteBufferInputStream extends InputStream {
+
+  private final ByteBuffer buffer;
+
+  ByteBufferInputStream(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public int read() {
+    return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) {
+    if (!buffer.hasRemaining()) return -1;
+
+    int read = Math.min(length, buffer.remaining());
+    buffer.get(bytes, offset, read);
+    return read;
+  }
+}
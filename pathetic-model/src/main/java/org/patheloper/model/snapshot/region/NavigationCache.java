@@ -0,0 +1,218 @@
+package org.patheloper.model.snapshot.region;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.patheloper.Pathetic;
+import org.patheloper.util.ChunkUtils;
+import org.patheloper.util.ExpiringHashMap;
+
+/**
+ * The NavigationCache keeps packed chunks on disk across restarts, under the data folder of the
+ * plugin, so that searches don't have to capture every chunk again after a restart.
+ *
+ * <p>A cached chunk is only used as long as it has not been saved again since it was cached, which
+ * is checked against the save timestamp in its region file. Chunks changed while the server is
+ * running are not served from the cache anymore until the next restart, since those changes only
+ * show up in the timestamp once the chunk is saved.
+ *
+ * <p>Chunks are packed and written on a background thread.
+ */
+@Slf4j
+public final class NavigationCache {
+
+  private static final String FOLDER_NAME = "navigation-cache";
+
+  private static final Map<UUID, NavigationCache> CACHES = new ConcurrentHashMap<>();
+
+  private static final ExecutorService WRITER =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "Pathetic Navigation Cache");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  static {
+    Pathetic.addShutdownListener(NavigationCache::shutdown);
+  }
+
+  private final File folder;
+  private final int minY;
+  private final int maxY;
+  private final RegionFileStorage regionFileStorage;
+
+  private final Map<Long, NavigationCacheFile> files = new ConcurrentHashMap<>();
+  private final Map<Long, ExpiringHashMap.Entry<RegionChunk>> chunks = new ExpiringHashMap<>();
+
+  /** Chunks changed since the server started, which must not be read from or written to disk. */
+  private final Set<Long> changedChunks = ConcurrentHashMap.newKeySet();
+
+  private NavigationCache(File folder, World world, RegionFileStorage regionFileStorage) {
+    this.folder = folder;
+    this.minY = world.getMinHeight();
+    this.maxY = world.getMaxHeight();
+    this.regionFileStorage = regionFileStorage;
+  }
+
+  /**
+   * @return the cache of the given world, or empty if there is no such world or Pathetic has not
+   *     been initialized
+   */
+  public static Optional<NavigationCache> forWorld(UUID worldUUID) {
+    NavigationCache cache = CACHES.get(worldUUID);
+    if (cache != null) return Optional.of(cache);
+
+    World world = Bukkit.getWorld(worldUUID);
+    Optional<RegionFileStorage> regionFileStorage = RegionFileStorage.forWorld(worldUUID);
+    if (world == null || !regionFileStorage.isPresent() || !Pathetic.isInitialized())
+      return Optional.empty();
+
+    File folder =
+        new File(
+            new File(Pathetic.getPluginInstance().getDataFolder(), FOLDER_NAME),
+            worldUUID.toString());
+    return Optional.of(
+        CACHES.computeIfAbsent(
+            worldUUID, uuid -> new NavigationCache(folder, world, regionFileStorage.get())));
+  }
+
+  /** Marks the chunk as changed in all caches. Meant to be called whenever blocks change. */
+  public static void invalidateChunk(UUID worldUUID, int chunkX, int chunkZ) {
+    NavigationCache cache = CACHES.get(worldUUID);
+    if (cache != null) cache.invalidate(chunkX, chunkZ);
+  }
+
+  /**
+   * @return the cached chunk, or empty if it is not cached, has been saved again since it was
+   *     cached or has been changed since the server started
+   */
+  public Optional<RegionChunk> getChunk(int chunkX, int chunkZ) {
+    long chunkKey = ChunkUtils.getChunkKey(chunkX, chunkZ);
+    ExpiringHashMap.Entry<RegionChunk> entry = chunks.get(chunkKey);
+    if (entry != null) return Optional.of(entry.getValue());
+    if (changedChunks.contains(chunkKey)) return Optional.empty();
+
+    int timestamp = regionFileStorage.getTimestamp(chunkX, chunkZ);
+    if (timestamp == 0) return Optional.empty();
+
+    try {
+      RegionChunk chunk = getFile(chunkX >> 5, chunkZ >> 5).read(chunkX, chunkZ, timestamp);
+      if (chunk == null || changedChunks.contains(chunkKey)) return Optional.empty();
+
+      chunks.put(chunkKey, new ExpiringHashMap.Entry<>(chunk));
+      return Optional.of(chunk);
+    } catch (IOException | RuntimeException e) {
+      log.debug("Failed to read chunk {}, {} from the navigation cache", chunkX, chunkZ, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Packs the snapshot and writes it to the cache in the background. Chunks which are cached
+   * already, have never been saved or have been changed since the server started are skipped.
+   */
+  public void store(int chunkX, int chunkZ, ChunkSnapshot snapshot) {
+    long chunkKey = ChunkUtils.getChunkKey(chunkX, chunkZ);
+    if (chunks.containsKey(chunkKey) || changedChunks.contains(chunkKey)) return;
+
+    WRITER.execute(
+        () -> {
+          int timestamp = regionFileStorage.getTimestamp(chunkX, chunkZ);
+          if (timestamp == 0 || changedChunks.contains(chunkKey)) return;
+
+          try {
+            RegionChunk chunk = RegionChunk.fromSnapshot(snapshot, minY, maxY);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream output = new DataOutputStream(bytes)) {
+              chunk.write(output);
+            }
+
+            getFile(chunkX >> 5, chunkZ >> 5)
+                .write(chunkX, chunkZ, timestamp, bytes.toByteArray());
+            if (!changedChunks.contains(chunkKey))
+              chunks.put(chunkKey, new ExpiringHashMap.Entry<>(chunk));
+          } catch (IOException | RuntimeException e) {
+            log.debug("Failed to write chunk {}, {} to the navigation cache", chunkX, chunkZ, e);
+          }
+        });
+  }
+
+  private void invalidate(int chunkX, int chunkZ) {
+    long chunkKey = ChunkUtils.getChunkKey(chunkX, chunkZ);
+    if (!changedChunks.add(chunkKey)) return;
+
+    chunks.remove(chunkKey);
+    WRITER.execute(
+        () -> {
+          try {
+            getFile(chunkX >> 5, chunkZ >> 5).remove(chunkX, chunkZ);
+          } catch (IOException e) {
+            log.debug("Failed to remove chunk {}, {} from the navigation cache", chunkX, chunkZ, e);
+          }
+        });
+  }
+
+  private NavigationCacheFile getFile(int regionX, int regionZ) throws IOException {
+    long regionKey = ChunkUtils.getChunkKey(regionX, regionZ);
+    NavigationCacheFile file = files.get(regionKey);
+    if (file != null) return file;
+
+    synchronized (files) {
+      file = files.get(regionKey);
+      if (file == null) {
+        if (!folder.isDirectory() && !folder.mkdirs())
+          throw new IOException("Could not create " + folder);
+
+        file =
+            NavigationCacheFile.open(
+                new File(folder, "r." + regionX + "." + regionZ + ".nav"),
+                getServerVersion());
+        files.put(regionKey, file);
+      }
+      return file;
+    }
+  }
+
+  /**
+   * Identifies the version of the server, which decides how the blocks of packed chunks resolve to
+   * materials. The Bukkit version changes with every Minecraft version, just like the data version
+   * does, but unlike the data version it is part of the supported API.
+   */
+  private static int getServerVersion() {
+    return Bukkit.getBukkitVersion().hashCode();
+  }
+
+  private void closeFiles() {
+    for (NavigationCacheFile file : files.values()) {
+      try {
+        file.close();
+      } catch (IOException e) {
+        log.debug("Failed to close navigation cache file", e);
+      }
+    }
+    files.clear();
+  }
+
+  /** Finishes pending writes and closes all files, once Pathetic shuts down. */
+  private static void shutdown() {
+    WRITER.execute(
+        () -> {
+          CACHES.values().forEach(NavigationCache::closeFiles);
+          CACHES.clear();
+        });
+    WRITER.shutdown();
+  }
+}
@@ -0,0 +1,169 @@
+package org.patheloper.model.snapshot.region;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A file holding the packed chunks of one region, 32x32 chunks, for the navigation cache. Like a
+ * region file it starts with a header which locates each chunk, and is accessed through memory
+ * mappings.
+ *
+ * <p>Each header entry holds the offset and length of the chunk data, together with the save
+ * timestamp the chunk had in its region file when it was packed. A chunk is only read back if that
+ * timestamp still matches, anything else means the chunk has been saved again since.
+ *
+ * <p>The whole file is discarded when it was written by another format or server version. Once
+ * more than half of it is taken up by data no chunk refers to anymore, it is compacted when opened.
+ */
+final class NavigationCacheFile implements Closeable {
+
+  private static final int MAGIC = 0x504E4156; // "PNAV"
+  private static final int FORMAT_VERSION = 1;
+
+  private static final int ENTRY_SIZE = 12;
+  private static final int ENTRIES_OFFSET = 12;
+  private static final int HEADER_SIZE = ENTRIES_OFFSET + 1024 * ENTRY_SIZE;
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final MappedByteBuffer header;
+
+  private NavigationCacheFile(RandomAccessFile file, FileChannel channel, MappedByteBuffer header) {
+    this.file = file;
+    this.channel = channel;
+    this.header = header;
+  }
+
+  /**
+   * Opens the file, creating it or starting it over if it is missing, damaged or outdated.
+   *
+   * @param serverVersion identifies the version of the server, chunks packed under other versions
+   *     are discarded
+   */
+  static NavigationCacheFile open(File path, int serverVersion) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(path, "rw");
+    try {
+      FileChannel channel = file.getChannel();
+      boolean valid = channel.size() >= HEADER_SIZE;
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+
+      if (!valid
+          || header.getInt(0) != MAGIC
+          || header.getInt(4) != FORMAT_VERSION
+          || header.getInt(8) != serverVersion) {
+        channel.truncate(HEADER_SIZE);
+        for (int i = 0; i < HEADER_SIZE; i += 4) header.putInt(i, 0);
+        header.putInt(0, MAGIC);
+        header.putInt(4, FORMAT_VERSION);
+        header.putInt(8, serverVersion);
+      }
+
+      NavigationCacheFile navigationCacheFile = new NavigationCacheFile(file, channel, header);
+      navigationCacheFile.compactIfWasteful();
+      return navigationCacheFile;
+    } catch (IOException | RuntimeException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the packed chunk, or null if it is not part of this file or has been packed for
+   *     another save of the chunk
+   */
+  @Nullable
+  synchronized RegionChunk read(int chunkX, int chunkZ, int timestamp) throws IOException {
+    int entry = getEntry(chunkX, chunkZ);
+    int offset = header.getInt(entry);
+    int length = header.getInt(entry + 4);
+    if (length == 0 || header.getInt(entry + 8) != timestamp) return null;
+
+    ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    return RegionChunk.read(new DataInputStream(new ByteBufferInputStream(data)));
+  }
+
+  /**
+   * Writes the packed chunk. It replaces the previous data of the chunk in place if it fits there,
+   * and is appended to the file otherwise. The header entry is only updated once the data has been
+   * written.
+   */
+  synchronized void write(int chunkX, int chunkZ, int timestamp, byte[] data) throws IOException {
+    int entry = getEntry(chunkX, chunkZ);
+    long offset =
+        header.getInt(entry + 4) >= data.length ? header.getInt(entry) : channel.size();
+    if (offset + data.length > Integer.MAX_VALUE) return;
+
+    header.putInt(entry + 4, 0);
+    channel.map(FileChannel.MapMode.READ_WRITE, offset, data.length).put(data);
+
+    header.putInt(entry, (int) offset);
+    header.putInt(entry + 8, timestamp);
+    header.putInt(entry + 4, data.length);
+  }
+
+  /**
+   * Drops the chunk, so it is not read anymore until it is written again. Its data stays where it
+   * is, so that the next write of the chunk can replace it in place.
+   */
+  synchronized void remove(int chunkX, int chunkZ) {
+    header.putInt(getEntry(chunkX, chunkZ) + 8, 0);
+  }
+
+  /**
+   * Moves the data of all chunks to the front of the file, right behind the header, and cuts off
+   * the rest, if more than half of the data is no longer referred to by the header. Data is left
+   * behind whenever a chunk grows and has to be appended.
+   */
+  private void compactIfWasteful() throws IOException {
+    List<Integer> entries = new ArrayList<>();
+    long used = 0;
+    for (int entry = ENTRIES_OFFSET; entry < HEADER_SIZE; entry += ENTRY_SIZE) {
+      if (header.getInt(entry + 4) == 0) continue;
+      entries.add(entry);
+      used += header.getInt(entry + 4);
+    }
+    if (channel.size() - HEADER_SIZE - used <= used) return;
+
+    // moving the data in order of its offset never overwrites data which is still to be moved
+    entries.sort(Comparator.comparingInt(header::getInt));
+    long position = HEADER_SIZE;
+    for (int entry : entries) {
+      int offset = header.getInt(entry);
+      int length = header.getInt(entry + 4);
+      if (offset != position) {
+        ByteBuffer data = ByteBuffer.allocate(length);
+        channel.read(data, offset);
+        data.flip();
+
+        header.putInt(entry + 4, 0);
+        channel.write(data, position);
+        header.putInt(entry, (int) position);
+        header.putInt(entry + 4, length);
+      }
+      position += length;
+    }
+
+    channel.truncate(position);
+    header.force();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    header.force();
+    file.close();
+  }
+
+  private static int getEntry(int chunkX, int chunkZ) {
+    return ENTRIES_OFFSET + ((chunkX & 31) + (chunkZ & 31) * 32) * ENTRY_SIZE;
+  }
+}
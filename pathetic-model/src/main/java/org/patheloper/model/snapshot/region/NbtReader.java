@@ -0,0 +1,165 @@
+package org.patheloper.model.snapshot.region;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A minimal reader for uncompressed NBT data. Compounds are read into maps, lists into lists and
+ * all other tags into their boxed values or arrays.
+ *
+ * <p>Tags whose name is part of the skipped tags are skipped without being decoded, wherever they
+ * appear. This keeps the reader from decoding light, biome and entity data nobody asked for.
+ */
+final class NbtReader {
+
+  private static final int TAG_END = 0;
+  private static final int TAG_BYTE = 1;
+  private static final int TAG_SHORT = 2;
+  private static final int TAG_INT = 3;
+  private static final int TAG_LONG = 4;
+  private static final int TAG_FLOAT = 5;
+  private static final int TAG_DOUBLE = 6;
+  private static final int TAG_BYTE_ARRAY = 7;
+  private static final int TAG_STRING = 8;
+  private static final int TAG_LIST = 9;
+  private static final int TAG_COMPOUND = 10;
+  private static final int TAG_INT_ARRAY = 11;
+  private static final int TAG_LONG_ARRAY = 12;
+
+  private final DataInput input;
+  private final Set<String> skippedTags;
+
+  NbtReader(DataInput input, Set<String> skippedTags) {
+    this.input = input;
+    this.skippedTags = skippedTags;
+  }
+
+  /** Reads the unnamed root compound of the data. */
+  Map<String, Object> readRoot() throws IOException {
+    int type = input.readUnsignedByte();
+    if (type != TAG_COMPOUND) throw new IOException("Root tag is not a compound but " + type);
+
+    input.readUTF();
+    return readCompound();
+  }
+
+  private Map<String, Object> readCompound() throws IOException {
+    Map<String, Object> compound = new HashMap<>();
+    int type;
+    while ((type = input.readUnsignedByte()) != TAG_END) {
+      String name = input.readUTF();
+      if (skippedTags.contains(name)) skipPayload(type);
+      else compound.put(name, readPayload(type));
+    }
+    return compound;
+  }
+
+  private Object readPayload(int type) throws IOException {
+    switch (type) {
+      case TAG_BYTE:
+        return input.readByte();
+      case TAG_SHORT:
+        return input.readShort();
+      case TAG_INT:
+        return input.readInt();
+      case TAG_LONG:
+        return input.readLong();
+      case TAG_FLOAT:
+        return input.readFloat();
+      case TAG_DOUBLE:
+        return input.readDouble();
+      case TAG_BYTE_ARRAY:
+        byte[] bytes = new byte[readLength()];
+        input.readFully(bytes);
+        return bytes;
+      case TAG_STRING:
+        return input.readUTF();
+      case TAG_LIST:
+        int elementType = input.readUnsignedByte();
+        int size = readLength();
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) list.add(readPayload(elementType));
+        return list;
+      case TAG_COMPOUND:
+        return readCompound();
+      case TAG_INT_ARRAY:
+        int[] ints = new int[readLength()];
+        for (int i = 0; i < ints.length; i++) ints[i] = input.readInt();
+        return ints;
+      case TAG_LONG_ARRAY:
+        long[] longs = new long[readLength()];
+        for (int i = 0; i < longs.length; i++) longs[i] = input.readLong();
+        return longs;
+      default:
+        throw new IOException("Unknown tag type " + type);
+    }
+  }
+
+  private void skipPayload(int type) throws IOException {
+    switch (type) {
+      case TAG_BYTE:
+        skip(1);
+        break;
+      case TAG_SHORT:
+        skip(2);
+        break;
+      case TAG_INT:
+      case TAG_FLOAT:
+        skip(4);
+        break;
+      case TAG_LONG:
+      case TAG_DOUBLE:
+        skip(8);
+        break;
+      case TAG_BYTE_ARRAY:
+        skip(readLength());
+        break;
+      case TAG_STRING:
+        skip(input.readUnsignedShort());
+        break;
+      case TAG_LIST:
+        int elementType = input.readUnsignedByte();
+        int size = readLength();
+        for (int i = 0; i < size; i++) skipPayload(elementType);
+        break;
+      case TAG_COMPOUND:
+        int childType;
+        while ((childType = input.readUnsignedByte()) != TAG_END) {
+          skip(input.readUnsignedShort());
+          skipPayload(childType);
+        }
+        break;
+      case TAG_INT_ARRAY:
+        skip(readLength() * 4L);
+        break;
+      case TAG_LONG_ARRAY:
+        skip(readLength() * 8L);
+        break;
+      default:
+        throw new IOException("Unknown tag type " + type);
+    }
+  }
+
+  private int readLength() throws IOException {
+    int length = input.readInt();
+    if (length < 0) throw new IOException("Negative length " + length);
+    return length;
+  }
+
+  private void skip(long bytes) throws IOException {
+    while (bytes > 0) {
+      int skipped = input.skipBytes((int) Math.min(bytes, Integer.MAX_VALUE));
+      if (skipped <= 0) {
+        // skipBytes may give up early on compressed streams, fall back to reading
+        input.readByte();
+        skipped = 1;
+      }
+      bytes -= skipped;
+    }
+  }
+}
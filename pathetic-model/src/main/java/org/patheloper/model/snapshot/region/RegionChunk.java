@@ -0,0 +1,285 @@
+package org.patheloper.model.snapshot.region;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.patheloper.api.wrapper.BlockInformation;
+import org.patheloper.api.wrapper.PathBlock;
+import org.patheloper.api.wrapper.PathPosition;
+import org.patheloper.util.ChunkUtils;
+
+/**
+ * The block materials of a chunk, decoded from its region file data. Only the block state palettes
+ * of the sections are decoded, the packed indices are kept as they are stored and unpacked on
+ * access, so a chunk takes little more memory than on disk.
+ *
+ * <p>Only chunks stored in the flattened format of 1.13 and above are supported. Chunks can also be
+ * packed from a {@link ChunkSnapshot} and written to and read from a compact binary form.
+ */
+public final class RegionChunk {
+
+  /** The first data version using the flattened block states, 17w47a. */
+  private static final int FLATTENING_DATA_VERSION = 1451;
+
+  /** The first data version whose packed indices don't span over two longs, 20w17a. */
+  private static final int ALIGNED_PACKING_DATA_VERSION = 2529;
+
+  /** Block names which are not known to this server are treated as solid. */
+  private static final Material UNKNOWN_MATERIAL = Material.STONE;
+
+  private static final int SECTION_VOLUME = 16 * 16 * 16;
+
+  private static final Map<String, Material> MATERIAL_CACHE = new ConcurrentHashMap<>();
+
+  private final int minSectionY;
+  private final Section[] sections;
+
+  private RegionChunk(int minSectionY, Section[] sections) {
+    this.minSectionY = minSectionY;
+    this.sections = sections;
+  }
+
+  /**
+   * @param x the x-coordinate within the chunk, 0 to 15
+   * @param y the absolute y-coordinate
+   * @param z the z-coordinate within the chunk, 0 to 15
+   * @return the material of the block, air for sections which are not stored
+   */
+  public Material getMaterial(int x, int y, int z) {
+    int index = (y >> 4) - minSectionY;
+    if (index < 0 || index >= sections.length || sections[index] == null) return Material.AIR;
+    return sections[index].getMaterial(((y & 15) << 8) | (z << 4) | x);
+  }
+
+  /**
+   * @return the block at the given position, which must lie within this chunk. The block carries no
+   *     {@link org.bukkit.block.BlockState}, since that is not part of the stored data.
+   */
+  public PathBlock getBlock(PathPosition position) {
+    Material material =
+        getMaterial(position.getBlockX() & 15, position.getBlockY(), position.getBlockZ() & 15);
+    return new PathBlock(position, new BlockInformation(material, null));
+  }
+
+  /**
+   * Packs the materials of a chunk snapshot the same way chunks read from region files are stored.
+   *
+   * @param minY the minimum height of the world the chunk belongs to
+   * @param maxY the maximum height of the world the chunk belongs to, exclusive
+   */
+  static RegionChunk fromSnapshot(ChunkSnapshot snapshot, int minY, int maxY) {
+    int minSectionY = minY >> 4;
+    Section[] sections = new Section[((maxY - 1) >> 4) - minSectionY + 1];
+
+    for (int i = 0; i < sections.length; i++) {
+      if (snapshot.isSectionEmpty(i)) continue;
+
+      Map<Material, Integer> paletteIndices = new LinkedHashMap<>();
+      int[] indices = new int[SECTION_VOLUME];
+      int baseY = (minSectionY + i) << 4;
+      for (int index = 0; index < SECTION_VOLUME; index++) {
+        Material material =
+            ChunkUtils.getMaterial(snapshot, index & 15, baseY + (index >> 8), (index >> 4) & 15);
+        Integer paletteIndex = paletteIndices.get(material);
+        if (paletteIndex == null) {
+          paletteIndex = paletteIndices.size();
+          paletteIndices.put(material, paletteIndex);
+        }
+        indices[index] = paletteIndex;
+      }
+
+      Material[] palette = paletteIndices.keySet().toArray(new Material[0]);
+      if (palette.length == 1) {
+        sections[i] = new Section(palette, null, 0, false);
+        continue;
+      }
+
+      int bits = Math.max(4, 32 - Integer.numberOfLeadingZeros(palette.length - 1));
+      int valuesPerLong = 64 / bits;
+      long[] data = new long[(SECTION_VOLUME + valuesPerLong - 1) / valuesPerLong];
+      for (int index = 0; index < SECTION_VOLUME; index++)
+        data[index / valuesPerLong] |= (long) indices[index] << ((index % valuesPerLong) * bits);
+      sections[i] = new Section(palette, data, bits, false);
+    }
+
+    return new RegionChunk(minSectionY, sections);
+  }
+
+  /** Writes the chunk in a compact binary form, which can be read again with {@link #read}. */
+  void write(DataOutput output) throws IOException {
+    output.writeInt(minSectionY);
+    output.writeShort(sections.length);
+    for (Section section : sections) {
+      output.writeBoolean(section != null);
+      if (section == null) continue;
+
+      output.writeShort(section.palette.length);
+      for (Material material : section.palette) output.writeUTF(material.name());
+      output.writeByte(section.bits);
+      output.writeBoolean(section.spanning);
+      output.writeInt(section.data == null ? 0 : section.data.length);
+      if (section.data != null) for (long value : section.data) output.writeLong(value);
+    }
+  }
+
+  /** Reads a chunk written with {@link #write}. */
+  static RegionChunk read(DataInput input) throws IOException {
+    int minSectionY = input.readInt();
+    Section[] sections = new Section[input.readUnsignedShort()];
+    for (int i = 0; i < sections.length; i++) {
+      if (!input.readBoolean()) continue;
+
+      Material[] palette = new Material[input.readUnsignedShort()];
+      for (int j = 0; j < palette.length; j++) palette[j] = resolveMaterial(input.readUTF());
+      int bits = input.readUnsignedByte();
+      boolean spanning = input.readBoolean();
+      int length = input.readInt();
+      long[] data = length == 0 ? null : new long[length];
+      for (int j = 0; j < length; j++) data[j] = input.readLong();
+      sections[i] = new Section(palette, data, bits, spanning);
+    }
+    return new RegionChunk(minSectionY, sections);
+  }
+
+  /**
+   * Decodes the chunk from the root compound of its NBT data.
+   *
+   * @return the chunk, or null if it is stored in an unsupported format or not fully generated
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  static RegionChunk decode(Map<String, Object> root) {
+    Object dataVersion = root.get("DataVersion");
+    if (!(dataVersion instanceof Integer) || (Integer) dataVersion < FLATTENING_DATA_VERSION)
+      return null;
+
+    // up to 1.17 the chunk data is wrapped in a "Level" compound
+    Map<String, Object> level =
+        root.containsKey("Level") ? (Map<String, Object>) root.get("Level") : root;
+    if (!isFullyGenerated(level.get("Status"))) return null;
+
+    Object sectionList =
+        level.containsKey("sections") ? level.get("sections") : level.get("Sections");
+    List<Map<String, Object>> sectionTags =
+        sectionList instanceof List
+            ? (List<Map<String, Object>>) sectionList
+            : Collections.<Map<String, Object>>emptyList();
+
+    int minSectionY = Integer.MAX_VALUE;
+    int maxSectionY = Integer.MIN_VALUE;
+    for (Map<String, Object> sectionTag : sectionTags) {
+      int sectionY = ((Number) sectionTag.get("Y")).intValue();
+      minSectionY = Math.min(minSectionY, sectionY);
+      maxSectionY = Math.max(maxSectionY, sectionY);
+    }
+    if (sectionTags.isEmpty()) return new RegionChunk(0, new Section[0]);
+
+    boolean spanning = (Integer) dataVersion < ALIGNED_PACKING_DATA_VERSION;
+    Section[] sections = new Section[maxSectionY - minSectionY + 1];
+    for (Map<String, Object> sectionTag : sectionTags) {
+      int sectionY = ((Number) sectionTag.get("Y")).intValue();
+      sections[sectionY - minSectionY] = decodeSection(sectionTag, spanning);
+    }
+
+    return new RegionChunk(minSectionY, sections);
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  private static Section decodeSection(Map<String, Object> sectionTag, boolean spanning) {
+    Object palette;
+    Object data;
+    if (sectionTag.containsKey("block_states")) {
+      Map<String, Object> blockStates = (Map<String, Object>) sectionTag.get("block_states");
+      palette = blockStates.get("palette");
+      data = blockStates.get("data");
+    } else {
+      palette = sectionTag.get("Palette");
+      data = sectionTag.get("BlockStates");
+    }
+
+    if (!(palette instanceof List) || ((List<?>) palette).isEmpty()) return null;
+
+    List<Map<String, Object>> paletteEntries = (List<Map<String, Object>>) palette;
+    Material[] materials = new Material[paletteEntries.size()];
+    for (int i = 0; i < materials.length; i++)
+      materials[i] = resolveMaterial((String) paletteEntries.get(i).get("Name"));
+
+    if (materials.length == 1 || !(data instanceof long[]))
+      return new Section(materials, null, 0, false);
+
+    int bits = Math.max(4, 32 - Integer.numberOfLeadingZeros(materials.length - 1));
+    return new Section(materials, (long[]) data, bits, spanning);
+  }
+
+  private static boolean isFullyGenerated(Object status) {
+    // chunks written before the status was introduced are always complete
+    if (!(status instanceof String)) return true;
+
+    // "fullchunk" and "postprocessed" in 1.13, "full" or "minecraft:full" afterwards
+    String value = (String) status;
+    return value.endsWith("full") || value.equals("fullchunk") || value.equals("postprocessed");
+  }
+
+  private static Material resolveMaterial(String name) {
+    if (name == null) return UNKNOWN_MATERIAL;
+    return MATERIAL_CACHE.computeIfAbsent(
+        name,
+        key -> {
+          Material material = Material.matchMaterial(key);
+          return material == null ? UNKNOWN_MATERIAL : material;
+        });
+  }
+
+  private static final class Section {
+
+    private final Material[] palette;
+    @Nullable private final long[] data;
+    private final int bits;
+    private final boolean spanning;
+    private final long mask;
+    private final int valuesPerLong;
+
+    private Section(Material[] palette, @Nullable long[] data, int bits, boolean spanning) {
+      this.palette = palette;
+      this.data = data;
+      this.bits = bits;
+      this.spanning = spanning;
+      this.mask = (1L << bits) - 1;
+      this.valuesPerLong = bits == 0 ? 0 : 64 / bits;
+    }
+
+    private Material getMaterial(int index) {
+      if (data == null) return palette[0];
+
+      int paletteIndex = spanning ? unpackSpanning(index) : unpackAligned(index);
+      return paletteIndex < palette.length ? palette[paletteIndex] : UNKNOWN_MATERIAL;
+    }
+
+    private int unpackAligned(int index) {
+      int longIndex = index / valuesPerLong;
+      if (longIndex >= data.length) return 0;
+      return (int) ((data[longIndex] >>> ((index % valuesPerLong) * bits)) & mask);
+    }
+
+    private int unpackSpanning(int index) {
+      int bitIndex = index * bits;
+      int longIndex = bitIndex >> 6;
+      int offset = bitIndex & 63;
+      if (longIndex >= data.length) return 0;
+
+      long value = data[longIndex] >>> offset;
+      if (offset + bits > 64 && longIndex + 1 < data.length)
+        value |= data[longIndex + 1] << (64 - offset);
+      return (int) (value & mask);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package org.patheloper.model.snapshot.region;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Read-only view on a region file (.mca), mapped into memory. The file is only mapped, the channel
+ * is closed right away again, so an open region file holds no file handle.
+ *
+ * <p>The mapping reflects writes of the server to the file. When a chunk lies beyond the mapped
+ * range, because the server appended to the file since it was mapped, the file is mapped again.
+ */
+final class RegionFile {
+
+  private static final int SECTOR_SIZE = 4096;
+  private static final int HEADER_SIZE = 2 * SECTOR_SIZE;
+
+  private static final int COMPRESSION_GZIP = 1;
+  private static final int COMPRESSION_ZLIB = 2;
+  private static final int COMPRESSION_NONE = 3;
+
+  /** Set on the compression type if the chunk is stored in a separate .mcc file. */
+  private static final int EXTERNAL_FLAG = 0x80;
+
+  private final File file;
+  private volatile MappedByteBuffer buffer;
+
+  private RegionFile(File file, MappedByteBuffer buffer) {
+    this.file = file;
+    this.buffer = buffer;
+  }
+
+  /**
+   * @return the mapped region file, or null if it does not exist or has no complete header yet
+   */
+  @Nullable
+  static RegionFile open(File file) throws IOException {
+    if (!file.isFile() || file.length() < HEADER_SIZE) return null;
+    return new RegionFile(file, map(file));
+  }
+
+  /**
+   * @return the time the given chunk has last been written to this file in seconds since the
+   *     epoch, or 0 if the chunk is not part of this file
+   */
+  int getTimestamp(int chunkX, int chunkZ) {
+    return buffer.getInt(SECTOR_SIZE + 4 * getIndex(chunkX, chunkZ));
+  }
+
+  /**
+   * Opens the decompressed NBT data of the given chunk.
+   *
+   * @return the data, or null if the chunk is not part of this file or stored in a way which is not
+   *     supported, like external or LZ4 compressed chunks
+   */
+  @Nullable
+  DataInputStream openChunk(int chunkX, int chunkZ) throws IOException {
+    int location = buffer.getInt(4 * getIndex(chunkX, chunkZ));
+    if (location == 0) return null;
+
+    long offset = (long) (location >>> 8) * SECTOR_SIZE;
+    long end = offset + (long) (location & 0xFF) * SECTOR_SIZE;
+    ByteBuffer mapping = ensureMapped(end).duplicate();
+    if (offset + 5 > mapping.capacity()) return null;
+
+    int length = mapping.getInt((int) offset);
+    int compression = mapping.get((int) offset + 4);
+    if (length <= 1 || offset + 4 + length > mapping.capacity()) return null;
+    if ((compression & EXTERNAL_FLAG) != 0) return null;
+
+    mapping.limit((int) offset + 4 + length);
+    mapping.position((int) offset + 5);
+    InputStream data = new ByteBufferInputStream(mapping);
+
+    switch (compression) {
+      case COMPRESSION_GZIP:
+        data = new GZIPInputStream(data);
+        break;
+      case COMPRESSION_ZLIB:
+        data = new InflaterInputStream(data);
+        break;
+      case COMPRESSION_NONE:
+        break;
+      default:
+        return null;
+    }
+    return new DataInputStream(new BufferedInputStream(data));
+  }
+
+  private synchronized MappedByteBuffer ensureMapped(long end) throws IOException {
+    if (end > buffer.capacity() && file.length() > buffer.capacity()) buffer = map(file);
+    return buffer;
+  }
+
+  private static MappedByteBuffer map(File file) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        FileChannel channel = randomAccessFile.getChannel()) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  private static int getIndex(int chunkX, int chunkZ) {
+    return (chunkX & 31) + (chunkZ & 31) * 32;
+  }
+}
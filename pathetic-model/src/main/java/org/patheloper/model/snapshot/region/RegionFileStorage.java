@@ -0,0 +1,179 @@
+package org.patheloper.model.snapshot.region;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.patheloper.util.ChunkUtils;
+import org.patheloper.util.ExpiringHashMap;
+
+/**
+ * Reads chunks of a single world straight from its region files, without the world being involved
+ * at all. Decoded chunks are cached and checked against the timestamp in the region file header on
+ * every access, so chunks rewritten by the server are decoded again.
+ *
+ * <p>Only what the server has saved can be read. Changes to chunks which are loaded, or have been
+ * unloaded but not saved yet, are not visible here.
+ */
+@Slf4j
+public final class RegionFileStorage {
+
+  /** Tags which are of no use for reading block types and are therefore not decoded. */
+  private static final Set<String> SKIPPED_TAGS =
+      new HashSet<>(
+          Arrays.asList(
+              "BlockLight",
+              "SkyLight",
+              "biomes",
+              "Biomes",
+              "Heightmaps",
+              "block_entities",
+              "TileEntities",
+              "Entities",
+              "structures",
+              "Structures",
+              "CarvingMasks",
+              "Lights",
+              "PostProcessing",
+              "block_ticks",
+              "fluid_ticks",
+              "TileTicks",
+              "LiquidTicks",
+              "blending_data",
+              "UpgradeData"));
+
+  /**
+   * How long a region file found missing is not looked for again, in milliseconds. Kept short,
+   * since the server creates region files as soon as it saves chunks of a new region.
+   */
+  private static final long MISSING_RECHECK_INTERVAL = 1000;
+
+  private static final Map<UUID, RegionFileStorage> STORAGES = new ConcurrentHashMap<>();
+
+  private final File regionFolder;
+
+  private final Map<Long, ExpiringHashMap.Entry<RegionFile>> regionFiles = new ExpiringHashMap<>();
+
+  /** The time each region file has last been found missing. */
+  private final Map<Long, Long> missingRegionFiles = new ConcurrentHashMap<>();
+  private final Map<Long, ExpiringHashMap.Entry<CachedChunk>> chunks = new ExpiringHashMap<>();
+
+  private RegionFileStorage(World world) {
+    this.regionFolder = resolveRegionFolder(world);
+  }
+
+  /**
+   * @return the storage of the given world, or empty if there is no such world
+   */
+  public static Optional<RegionFileStorage> forWorld(UUID worldUUID) {
+    RegionFileStorage storage = STORAGES.get(worldUUID);
+    if (storage != null) return Optional.of(storage);
+
+    World world = Bukkit.getWorld(worldUUID);
+    if (world == null) return Optional.empty();
+    return Optional.of(STORAGES.computeIfAbsent(worldUUID, uuid -> new RegionFileStorage(world)));
+  }
+
+  /**
+   * @return the time the given chunk has last been saved in seconds since the epoch, or 0 if it
+   *     has not been saved yet
+   */
+  public int getTimestamp(int chunkX, int chunkZ) {
+    Optional<RegionFile> regionFile = getRegionFile(chunkX >> 5, chunkZ >> 5);
+    return regionFile.map(file -> file.getTimestamp(chunkX, chunkZ)).orElse(0);
+  }
+
+  /**
+   * @return the chunk as it is saved in the region files, or empty if it has not been saved yet, is
+   *     not fully generated or can't be read
+   */
+  public Optional<RegionChunk> getChunk(int chunkX, int chunkZ) {
+    Optional<RegionFile> regionFile = getRegionFile(chunkX >> 5, chunkZ >> 5);
+    if (!regionFile.isPresent()) return Optional.empty();
+
+    int timestamp = regionFile.get().getTimestamp(chunkX, chunkZ);
+    if (timestamp == 0) return Optional.empty();
+
+    long chunkKey = ChunkUtils.getChunkKey(chunkX, chunkZ);
+    ExpiringHashMap.Entry<CachedChunk> entry = chunks.get(chunkKey);
+    if (entry != null && entry.getValue().timestamp == timestamp)
+      return Optional.ofNullable(entry.getValue().chunk);
+
+    // chunks which can't be read are cached as well, so they aren't read again on every access
+    RegionChunk chunk = readChunk(regionFile.get(), chunkX, chunkZ);
+    chunks.put(chunkKey, new ExpiringHashMap.Entry<>(new CachedChunk(timestamp, chunk)));
+    return Optional.ofNullable(chunk);
+  }
+
+  private Optional<RegionFile> getRegionFile(int regionX, int regionZ) {
+    long regionKey = ChunkUtils.getChunkKey(regionX, regionZ);
+    ExpiringHashMap.Entry<RegionFile> entry = regionFiles.get(regionKey);
+    if (entry != null) return Optional.of(entry.getValue());
+
+    Long missingSince = missingRegionFiles.get(regionKey);
+    if (missingSince != null
+        && System.currentTimeMillis() - missingSince < MISSING_RECHECK_INTERVAL)
+      return Optional.empty();
+
+    File file = new File(regionFolder, "r." + regionX + "." + regionZ + ".mca");
+    RegionFile regionFile;
+    try {
+      regionFile = RegionFile.open(file);
+    } catch (IOException e) {
+      log.debug("Failed to map region file {}", file, e);
+      regionFile = null;
+    }
+
+    if (regionFile == null) {
+      missingRegionFiles.put(regionKey, System.currentTimeMillis());
+      return Optional.empty();
+    }
+
+    missingRegionFiles.remove(regionKey);
+    regionFiles.put(regionKey, new ExpiringHashMap.Entry<>(regionFile));
+    return Optional.of(regionFile);
+  }
+
+  @Nullable
+  private static RegionChunk readChunk(RegionFile regionFile, int chunkX, int chunkZ) {
+    try (DataInputStream input = regionFile.openChunk(chunkX, chunkZ)) {
+      if (input == null) return null;
+      return RegionChunk.decode(new NbtReader(input, SKIPPED_TAGS).readRoot());
+    } catch (IOException | RuntimeException e) {
+      // the server might be writing the chunk right now, treat it as not available
+      log.debug("Failed to read chunk {}, {} from its region file", chunkX, chunkZ, e);
+      return null;
+    }
+  }
+
+  private static File resolveRegionFolder(World world) {
+    switch (world.getEnvironment()) {
+      case NETHER:
+        return new File(world.getWorldFolder(), "DIM-1" + File.separator + "region");
+      case THE_END:
+        return new File(world.getWorldFolder(), "DIM1" + File.separator + "region");
+      default:
+        return new File(world.getWorldFolder(), "region");
+    }
+  }
+
+  @AllArgsConstructor
+  private static final class CachedChunk {
+
+    /** The timestamp of the region file entry the chunk has been read from. */
+    private final int timestamp;
+
+    @Nullable private final RegionChunk chunk;
+  }
+}
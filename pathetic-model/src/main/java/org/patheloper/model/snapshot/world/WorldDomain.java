@@ -1,7 +1,13 @@
 package org.patheloper.model.snapshot.world;
 
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 import org.bukkit.ChunkSnapshot;
 import org.patheloper.util.ExpiringHashMap;
 
@@ -10,7 +16,19 @@ public class WorldDomain {
   private final Map<Long, ExpiringHashMap.Entry<ChunkSnapshot>> chunkSnapshotMap =
       new ExpiringHashMap<>();
 
+  /**
+   * Chunks which have been marked as changed since the last flush. The value tells whether the
+   * invalidation has already been applied early because a search asked for the chunk in between.
+   */
+  private final Map<Long, Boolean> pendingInvalidations = new ConcurrentHashMap<>();
+
+  /** Snapshots which are currently being captured or loaded, so that callers can share them. */
+  private final Map<Long, CompletableFuture<ChunkSnapshot>> pendingSnapshots =
+      new ConcurrentHashMap<>();
+
   public Optional<ChunkSnapshot> getSnapshot(long key) {
+    applyPendingInvalidation(key);
+
     ExpiringHashMap.Entry<ChunkSnapshot> entry = chunkSnapshotMap.get(key);
     if (entry == null) return Optional.empty();
     return Optional.ofNullable(entry.getValue());
@@ -27,4 +45,110 @@ public class WorldDomain {
   public boolean containsSnapshot(final long key) {
     return chunkSnapshotMap.get(key) != null;
   }
+
+  /**
+   * Captures the snapshot of the given chunk through the capturer, making sure that concurrent
+   * callers share a single capture instead of all capturing the same chunk on their own.
+   *
+   * @param mayWait whether the caller is allowed to block while another thread captures the chunk.
+   *     Callers which can't wait, e.g. because the running capture needs their thread, capture the
+   *     chunk themselves instead.
+   */
+  public ChunkSnapshot captureSnapshot(
+      final long key, Supplier<ChunkSnapshot> capturer, boolean mayWait) {
+    CompletableFuture<ChunkSnapshot> future = new CompletableFuture<>();
+    CompletableFuture<ChunkSnapshot> pending = pendingSnapshots.putIfAbsent(key, future);
+
+    if (pending != null) {
+      if (mayWait || pending.isDone()) {
+        try {
+          ChunkSnapshot snapshot = pending.join();
+          if (snapshot != null) return snapshot;
+        } catch (CompletionException ignored) {
+          // the shared capture failed, fall through and capture it ourselves
+        }
+      }
+      return capture(key, capturer);
+    }
+
+    try {
+      Optional<ChunkSnapshot> captured = getSnapshot(key);
+      ChunkSnapshot snapshot = captured.isPresent() ? captured.get() : capture(key, capturer);
+      future.complete(snapshot);
+      return snapshot;
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      pendingSnapshots.remove(key, future);
+    }
+  }
+
+  /**
+   * Requests the snapshot of the given chunk through the loader, unless a request for that chunk is
+   * already in flight, in which case the running request is returned. The loaded snapshot is added
+   * to this domain once the returned future completes.
+   */
+  public CompletableFuture<ChunkSnapshot> requestSnapshot(
+      final long key, Supplier<CompletableFuture<ChunkSnapshot>> loader) {
+    CompletableFuture<ChunkSnapshot> pending = pendingSnapshots.get(key);
+    if (pending != null) return pending;
+
+    CompletableFuture<ChunkSnapshot> future = new CompletableFuture<>();
+    pending = pendingSnapshots.putIfAbsent(key, future);
+    if (pending != null) return pending;
+
+    try {
+      loader
+          .get()
+          .whenComplete(
+              (snapshot, throwable) -> {
+                if (snapshot != null) addSnapshot(key, snapshot);
+                pendingSnapshots.remove(key, future);
+
+                if (throwable != null) future.completeExceptionally(throwable);
+                else future.complete(snapshot);
+              });
+    } catch (RuntimeException e) {
+      pendingSnapshots.remove(key, future);
+      future.completeExceptionally(e);
+    }
+
+    return future;
+  }
+
+  /**
+   * Marks the snapshot of the given chunk as outdated. The snapshot is not dropped right away but
+   * once per tick with {@link #flushInvalidations}, or earlier if a search requests the chunk.
+   */
+  public void markInvalid(final long key) {
+    pendingInvalidations.putIfAbsent(key, Boolean.FALSE);
+  }
+
+  /**
+   * Drops the snapshots of all chunks marked as outdated since the last flush. This also drops
+   * snapshots which got recaptured after an early invalidation, since those might have been taken
+   * before the block change was actually applied to the world.
+   *
+   * @param flushed notified with the key of every chunk whose invalidation has been applied
+   */
+  public void flushInvalidations(LongConsumer flushed) {
+    Iterator<Long> iterator = pendingInvalidations.keySet().iterator();
+    while (iterator.hasNext()) {
+      long key = iterator.next();
+      iterator.remove();
+      chunkSnapshotMap.remove(key);
+      flushed.accept(key);
+    }
+  }
+
+  private ChunkSnapshot capture(long key, Supplier<ChunkSnapshot> capturer) {
+    ChunkSnapshot snapshot = capturer.get();
+    if (snapshot != null) addSnapshot(key, snapshot);
+    return snapshot;
+  }
+
+  private void applyPendingInvalidation(long key) {
+    if (pendingInvalidations.replace(key, Boolean.FALSE, Boolean.TRUE)) removeSnapshot(key);
+  }
 }
@@ -31,6 +31,34 @@ public class ChunkUtils {
     return x & 0xFFFFFFFFL | (z & 0xFFFFFFFFL) << 32;
   }
 
+  /**
+   * Packs the coordinates of a block into a single key, 26 bits each for x and z and 12 bits for y,
+   * which covers every block within the world border.
+   */
+  public long getBlockKey(final int x, final int y, final int z) {
+    return ((long) x & 0x3FFFFFF) << 38 | ((long) z & 0x3FFFFFF) << 12 | (y & 0xFFF);
+  }
+
+  /**
+   * Packs the coordinates of a chunk section into a single key, 26 bits each for x and z and 12
+   * bits for y.
+   */
+  public long getSectionKey(final int x, final int y, final int z) {
+    return ((long) x & 0x3FFFFFF) << 38 | ((long) z & 0x3FFFFFF) << 12 | (y & 0xFFF);
+  }
+
+  public int getSectionX(final long sectionKey) {
+    return (int) (sectionKey >> 38);
+  }
+
+  public int getSectionY(final long sectionKey) {
+    return (int) (sectionKey << 52 >> 52);
+  }
+
+  public int getSectionZ(final long sectionKey) {
+    return (int) (sectionKey << 26 >> 38);
+  }
+
   /** Get the block type from a chunk snapshot at the given coordinates */
   @SneakyThrows
   public Material getMaterial(ChunkSnapshot snapshot, int x, int y, int z) {
@@ -0,0 +1,106 @@
+package org.patheloper.util;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive longs to primitive longs, using open addressing with linear probing.
+ * Neither keys nor values are boxed, which keeps it cheap for maps with many small entries.
+ *
+ * <p>Not thread-safe.
+ */
+public class LongLongHashMap {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+  private static final long EMPTY_KEY = 0L;
+
+  private long[] keys;
+  private long[] values;
+  private int size;
+  private int mask;
+
+  // the empty key can't be stored in the table itself
+  private boolean hasEmptyKey;
+  private long emptyKeyValue;
+
+  public LongLongHashMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param expectedSize the amount of entries the map should hold without growing
+   */
+  public LongLongHashMap(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+    this.keys = new long[capacity];
+    this.values = new long[capacity];
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * @return the value stored for the key, or the default value if there is none
+   */
+  public long get(long key, long defaultValue) {
+    if (key == EMPTY_KEY) return hasEmptyKey ? emptyKeyValue : defaultValue;
+
+    int index = indexOf(key);
+    return keys[index] == key ? values[index] : defaultValue;
+  }
+
+  public void put(long key, long value) {
+    if (key == EMPTY_KEY) {
+      hasEmptyKey = true;
+      emptyKeyValue = value;
+      return;
+    }
+
+    int index = indexOf(key);
+    if (keys[index] != key) {
+      keys[index] = key;
+      if (++size * 2 > keys.length) {
+        values[index] = value;
+        grow();
+        return;
+      }
+    }
+    values[index] = value;
+  }
+
+  public int size() {
+    return size + (hasEmptyKey ? 1 : 0);
+  }
+
+  public void clear() {
+    Arrays.fill(keys, EMPTY_KEY);
+    size = 0;
+    hasEmptyKey = false;
+  }
+
+  /** @return the slot holding the key, or the empty slot it would be stored in */
+  private int indexOf(long key) {
+    int index = mix(key) & mask;
+    while (keys[index] != EMPTY_KEY && keys[index] != key) index = (index + 1) & mask;
+    return index;
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    long[] oldValues = values;
+
+    keys = new long[oldKeys.length * 2];
+    values = new long[oldValues.length * 2];
+    mask = keys.length - 1;
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] == EMPTY_KEY) continue;
+
+      int index = indexOf(oldKeys[i]);
+      keys[index] = oldKeys[i];
+      values[index] = oldValues[i];
+    }
+  }
+
+  private static int mix(long key) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32));
+  }
+}
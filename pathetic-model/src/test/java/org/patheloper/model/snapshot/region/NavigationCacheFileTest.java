@@ -0,0 +1,90 @@
+package org.patheloper.model.snapshot.region;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.patheloper.model.snapshot.region.RegionFixtures.NAVIGATION_SERVER_VERSION;
+import static org.patheloper.model.snapshot.region.RegionFixtures.TIMESTAMP;
+import static org.patheloper.model.snapshot.region.RegionFixtures.assertPatternSection;
+import static org.patheloper.model.snapshot.region.RegionFixtures.assertUniformSection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.bukkit.Material;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NavigationCacheFileTest {
+
+  @TempDir File folder;
+
+  @Test
+  void readsPackedChunks() throws IOException {
+    try (NavigationCacheFile file = openFixture(NAVIGATION_SERVER_VERSION)) {
+      RegionChunk chunk = file.read(0, 0, TIMESTAMP);
+
+      assertNotNull(chunk);
+      assertUniformSection(chunk, 0, Material.AIR);
+      assertPatternSection(chunk, 16);
+      assertUniformSection(chunk, 32, Material.STONE);
+    }
+  }
+
+  @Test
+  void skipsChunksSavedAgainSincePacked() throws IOException {
+    try (NavigationCacheFile file = openFixture(NAVIGATION_SERVER_VERSION)) {
+      assertNull(file.read(0, 0, TIMESTAMP + 1));
+      assertNull(file.read(1, 0, TIMESTAMP));
+    }
+  }
+
+  @Test
+  void discardsChunksPackedForOtherServerVersions() throws IOException {
+    try (NavigationCacheFile file = openFixture(NAVIGATION_SERVER_VERSION + 1)) {
+      assertNull(file.read(0, 0, TIMESTAMP));
+    }
+  }
+
+  @Test
+  void readsWrittenChunksAfterReopening() throws IOException {
+    File path = new File(folder, "r.0.0.nav");
+    try (NavigationCacheFile file = NavigationCacheFile.open(path, NAVIGATION_SERVER_VERSION)) {
+      file.write(-1, 5, TIMESTAMP, write(RegionFixtures.decodeChunk("1.16", 0, 0)));
+    }
+
+    try (NavigationCacheFile file = NavigationCacheFile.open(path, NAVIGATION_SERVER_VERSION)) {
+      RegionChunk chunk = file.read(-1, 5, TIMESTAMP);
+
+      assertNotNull(chunk);
+      assertPatternSection(chunk, 0);
+      assertUniformSection(chunk, 32, Material.STONE);
+    }
+  }
+
+  @Test
+  void skipsRemovedChunks() throws IOException {
+    try (NavigationCacheFile file = openFixture(NAVIGATION_SERVER_VERSION)) {
+      file.remove(0, 0);
+
+      assertNull(file.read(0, 0, TIMESTAMP));
+    }
+  }
+
+  /** Opens a copy of the fixture, since opening a file may rewrite it. */
+  private NavigationCacheFile openFixture(int serverVersion) throws IOException {
+    File copy = new File(folder, "r.0.0.nav");
+    Files.copy(RegionFixtures.getFile("navigation/r.0.0.nav").toPath(), copy.toPath());
+    return NavigationCacheFile.open(copy, serverVersion);
+  }
+
+  private static byte[] write(RegionChunk chunk) throws IOException {
+    assertNotNull(chunk);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      chunk.write(output);
+    }
+    return bytes.toByteArray();
+  }
+}
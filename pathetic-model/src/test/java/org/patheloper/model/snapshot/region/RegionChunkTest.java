@@ -0,0 +1,179 @@
+package org.patheloper.model.snapshot.region;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.patheloper.model.snapshot.region.RegionFixtures.assertPatternSection;
+import static org.patheloper.model.snapshot.region.RegionFixtures.assertUniformSection;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class RegionChunkTest {
+
+  private static final int MIN_Y = -64;
+  private static final int MAX_Y = 320;
+
+  /** Packing a snapshot reads its blocks through the version dependent chunk utilities. */
+  @BeforeAll
+  static void setUpServer() {
+    if (Bukkit.getServer() != null) return;
+
+    Bukkit.setServer(
+        (Server)
+            Proxy.newProxyInstance(
+                Server.class.getClassLoader(),
+                new Class<?>[] {Server.class},
+                (proxy, method, args) -> {
+                  switch (method.getName()) {
+                    case "getName":
+                      return "Test";
+                    case "getVersion":
+                      return "git-Test (MC: 1.21)";
+                    case "getBukkitVersion":
+                      return "1.21-R0.1-SNAPSHOT";
+                    case "getLogger":
+                      return Logger.getLogger("Test");
+                    default:
+                      throw new UnsupportedOperationException(method.getName());
+                  }
+                }));
+  }
+
+  @Test
+  void unpacksIndicesSpanningTwoLongs() throws IOException {
+    RegionChunk chunk = RegionFixtures.decodeChunk("1.13", 0, 0);
+
+    assertNotNull(chunk);
+    assertPatternSection(chunk, 0);
+    assertUniformSection(chunk, 16, Material.AIR);
+    assertUniformSection(chunk, 32, Material.STONE);
+  }
+
+  @Test
+  void unpacksIndicesAlignedToLongs() throws IOException {
+    RegionChunk chunk = RegionFixtures.decodeChunk("1.16", 0, 0);
+
+    assertNotNull(chunk);
+    assertUniformSection(chunk, -16, Material.AIR);
+    assertPatternSection(chunk, 0);
+    assertUniformSection(chunk, 32, Material.STONE);
+  }
+
+  @Test
+  void decodesBlockStatesOfSectionsWithoutLevel() throws IOException {
+    RegionChunk chunk = RegionFixtures.decodeChunk("1.21", -1, -1);
+
+    assertNotNull(chunk);
+    assertPatternSection(chunk, -64);
+    assertUniformSection(chunk, -48, Material.STONE);
+    assertUniformSection(chunk, 80, Material.AIR);
+    assertEquals(Material.AIR, chunk.getMaterial(0, -80, 0));
+    assertEquals(Material.AIR, chunk.getMaterial(0, 200, 0));
+  }
+
+  @Test
+  void decodesChunksRegardlessOfCompression() throws IOException {
+    for (int chunkX = 0; chunkX < 3; chunkX++) {
+      RegionChunk chunk = RegionFixtures.decodeChunk("1.13", chunkX, 0);
+
+      assertNotNull(chunk, "Chunk " + chunkX);
+      assertPatternSection(chunk, 0);
+    }
+  }
+
+  @Test
+  void acceptsStatusesOfCompleteChunks() throws IOException {
+    // "fullchunk" and "postprocessed" of 1.13, "full" up to 1.20.4 and "minecraft:full" after
+    assertNotNull(RegionFixtures.decodeChunk("1.13", 0, 0));
+    assertNotNull(RegionFixtures.decodeChunk("1.13", 2, 0));
+    assertNotNull(RegionFixtures.decodeChunk("1.16", 0, 0));
+    assertNotNull(RegionFixtures.decodeChunk("1.21", -1, -1));
+  }
+
+  @Test
+  void rejectsChunksWhichAreNotFullyGenerated() throws IOException {
+    assertNull(RegionFixtures.decodeChunk("1.13", 3, 0));
+    assertNull(RegionFixtures.decodeChunk("1.16", 1, 0));
+    assertNull(RegionFixtures.decodeChunk("1.21", -2, -1));
+  }
+
+  @Test
+  void rejectsChunksOlderThanTheFlattening() {
+    Map<String, Object> root = new HashMap<>();
+    root.put("DataVersion", 1343);
+    root.put("Level", new HashMap<String, Object>());
+
+    assertNull(RegionChunk.decode(root));
+  }
+
+  @Test
+  void readsWhatItWroteFromSnapshot() throws IOException {
+    RegionChunk chunk = RegionChunk.fromSnapshot(createSnapshot(), MIN_Y, MAX_Y);
+    byte[] written = write(chunk);
+    RegionChunk read = RegionChunk.read(new DataInputStream(new ByteArrayInputStream(written)));
+
+    for (int y = MIN_Y; y < MAX_Y; y++)
+      for (int z = 0; z < 16; z++)
+        for (int x = 0; x < 16; x++) {
+          Material expected = getSnapshotMaterial(x, y, z);
+          assertEquals(expected, chunk.getMaterial(x, y, z), x + ", " + y + ", " + z);
+          assertEquals(expected, read.getMaterial(x, y, z), x + ", " + y + ", " + z);
+        }
+    assertArrayEquals(written, write(read));
+  }
+
+  /**
+   * A snapshot whose lowest section is bedrock, every third section empty and all others filled
+   * with the pattern of the fixtures.
+   */
+  private static ChunkSnapshot createSnapshot() {
+    return (ChunkSnapshot)
+        Proxy.newProxyInstance(
+            ChunkSnapshot.class.getClassLoader(),
+            new Class<?>[] {ChunkSnapshot.class},
+            (proxy, method, args) -> {
+              switch (method.getName()) {
+                case "getBlockType":
+                  return getSnapshotMaterial((int) args[0], (int) args[1], (int) args[2]);
+                case "isSectionEmpty":
+                  return isEmptySection((int) args[0]);
+                default:
+                  throw new UnsupportedOperationException(method.getName());
+              }
+            });
+  }
+
+  private static Material getSnapshotMaterial(int x, int y, int z) {
+    int section = (y - MIN_Y) >> 4;
+    if (section == 0) return Material.BEDROCK;
+    if (isEmptySection(section)) return Material.AIR;
+    return RegionFixtures.getPatternMaterial(x, y, z);
+  }
+
+  private static boolean isEmptySection(int section) {
+    return section % 3 == 2;
+  }
+
+  private static byte[] write(RegionChunk chunk) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      chunk.write(output);
+    }
+    return bytes.toByteArray();
+  }
+}
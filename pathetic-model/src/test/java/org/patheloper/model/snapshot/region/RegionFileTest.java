@@ -0,0 +1,76 @@
+package org.patheloper.model.snapshot.region;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.patheloper.model.snapshot.region.RegionFixtures.TIMESTAMP;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RegionFileTest {
+
+  @Test
+  void readsTimestampsFromTheHeader() throws IOException {
+    RegionFile regionFile = RegionFixtures.openRegionFile("1.13");
+
+    assertEquals(TIMESTAMP, regionFile.getTimestamp(0, 0));
+    assertEquals(TIMESTAMP + 2, regionFile.getTimestamp(2, 0));
+    assertEquals(0, regionFile.getTimestamp(5, 5));
+  }
+
+  @Test
+  void mapsNegativeChunksIntoTheirRegion() throws IOException {
+    RegionFile regionFile = RegionFixtures.openRegionFile("1.21");
+
+    assertEquals(TIMESTAMP, regionFile.getTimestamp(-1, -1));
+    assertEquals(TIMESTAMP + 1, regionFile.getTimestamp(-2, -1));
+  }
+
+  @Test
+  void opensGzipCompressedChunks() throws IOException {
+    assertChunkData(0, 0);
+  }
+
+  @Test
+  void opensZlibCompressedChunks() throws IOException {
+    assertChunkData(1, 0);
+  }
+
+  @Test
+  void opensUncompressedChunks() throws IOException {
+    assertChunkData(2, 0);
+  }
+
+  @Test
+  void returnsNoDataForMissingChunks() throws IOException {
+    assertNull(RegionFixtures.openRegionFile("1.13").openChunk(5, 5));
+  }
+
+  @Test
+  void ignoresFilesWithoutCompleteHeader(@TempDir File folder) throws IOException {
+    assertNull(RegionFile.open(new File(folder, "r.0.0.mca")));
+
+    File truncated = new File(folder, "r.1.0.mca");
+    assertTrue(truncated.createNewFile());
+    assertNull(RegionFile.open(truncated));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void assertChunkData(int chunkX, int chunkZ) throws IOException {
+    try (DataInputStream input = RegionFixtures.openRegionFile("1.13").openChunk(chunkX, chunkZ)) {
+      assertNotNull(input);
+
+      Map<String, Object> root = RegionFixtures.readRoot(input);
+      assertEquals(1631, root.get("DataVersion"));
+      Map<String, Object> level = (Map<String, Object>) root.get("Level");
+      assertEquals(chunkX, level.get("xPos"));
+      assertEquals(chunkZ, level.get("zPos"));
+    }
+  }
+}
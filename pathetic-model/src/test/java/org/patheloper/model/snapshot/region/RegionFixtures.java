@@ -0,0 +1,112 @@
+package org.patheloper.model.snapshot.region;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import org.bukkit.Material;
+
+/**
+ * The fixture files the region tests read, see {@code src/test/resources}.
+ *
+ * <p>Every chunk of the fixtures holds a section filled with {@link #PALETTE} in the pattern of
+ * {@link #getPatternMaterial}, which uses more than 16 palette entries so that the indices take 5
+ * bits and don't fit a long evenly. The region files hold:
+ *
+ * <ul>
+ *   <li>{@code region/1.13/r.0.0.mca}: data version 1631, the pattern in section 0 and stone in
+ *       section 2. Chunk 0, 0 is stored with GZip, 1, 0 with zlib and 2, 0 uncompressed, all of
+ *       them complete. Chunk 3, 0 has only been carved.
+ *   <li>{@code region/1.16/r.0.0.mca}: data version 2586, laid out like 1.13 but with aligned
+ *       indices and an additional light-only section -1. Chunk 0, 0 is complete, 1, 0 is not.
+ *   <li>{@code region/1.21/r.-1.-1.mca}: data version 3953, the pattern in section -4, stone in
+ *       section -3 and air in section 5. Chunk -1, -1 is complete, -2, -1 is not.
+ * </ul>
+ *
+ * <p>{@code navigation/r.0.0.nav} holds chunk 0, 0 packed by {@link RegionChunk#write}, for server
+ * version {@link #NAVIGATION_SERVER_VERSION} and saved at {@link #TIMESTAMP}. Its section 1 holds
+ * the pattern and section 2 stone.
+ */
+final class RegionFixtures {
+
+  static final Material[] PALETTE = {
+    Material.AIR,
+    Material.STONE,
+    Material.GRANITE,
+    Material.DIORITE,
+    Material.ANDESITE,
+    Material.DIRT,
+    Material.COBBLESTONE,
+    Material.OAK_PLANKS,
+    Material.BEDROCK,
+    Material.SAND,
+    Material.GRAVEL,
+    Material.GOLD_ORE,
+    Material.IRON_ORE,
+    Material.COAL_ORE,
+    Material.OAK_LOG,
+    Material.GLASS,
+    Material.BRICKS,
+    Material.BOOKSHELF
+  };
+
+  /** The save timestamp of the first chunk of every file, the following ones count up from it. */
+  static final int TIMESTAMP = 1700000000;
+
+  static final int NAVIGATION_SERVER_VERSION = 1;
+
+  private RegionFixtures() {}
+
+  static Material getPatternMaterial(int x, int y, int z) {
+    return PALETTE[(x + 3 * z + 5 * (y & 15)) % PALETTE.length];
+  }
+
+  static File getFile(String path) {
+    URL resource = RegionFixtures.class.getResource("/" + path);
+    assertNotNull(resource, "Missing fixture " + path);
+    try {
+      return new File(resource.toURI());
+    } catch (URISyntaxException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static RegionFile openRegionFile(String version) throws IOException {
+    String name = version.equals("1.21") ? "r.-1.-1.mca" : "r.0.0.mca";
+    RegionFile regionFile = RegionFile.open(getFile("region/" + version + "/" + name));
+    assertNotNull(regionFile);
+    return regionFile;
+  }
+
+  /** @return the decoded chunk, or null if the chunk is not part of the file or not supported */
+  static RegionChunk decodeChunk(String version, int chunkX, int chunkZ) throws IOException {
+    try (DataInputStream input = openRegionFile(version).openChunk(chunkX, chunkZ)) {
+      assertNotNull(input);
+      return RegionChunk.decode(readRoot(input));
+    }
+  }
+
+  static Map<String, Object> readRoot(DataInputStream input) throws IOException {
+    return new NbtReader(input, Collections.<String>emptySet()).readRoot();
+  }
+
+  static void assertPatternSection(RegionChunk chunk, int minY) {
+    for (int y = minY; y < minY + 16; y++)
+      for (int z = 0; z < 16; z++)
+        for (int x = 0; x < 16; x++)
+          assertEquals(
+              getPatternMaterial(x, y, z), chunk.getMaterial(x, y, z), x + ", " + y + ", " + z);
+  }
+
+  static void assertUniformSection(RegionChunk chunk, int minY, Material material) {
+    for (int y = minY; y < minY + 16; y++)
+      for (int z = 0; z < 16; z++)
+        for (int x = 0; x < 16; x++) assertEquals(material, chunk.getMaterial(x, y, z));
+  }
+}
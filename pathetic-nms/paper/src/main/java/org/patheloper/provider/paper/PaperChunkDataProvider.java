@@ -1,6 +1,8 @@
 package org.patheloper.provider.paper;
 
+import java.util.concurrent.CompletableFuture;
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.ChunkSnapshot;
 import org.bukkit.World;
 import org.bukkit.block.BlockState;
@@ -11,9 +13,21 @@ public class PaperChunkDataProvider implements ChunkDataProvider {
 
   @Override
   public ChunkSnapshot getSnapshot(World world, int chunkX, int chunkZ) {
-    if (Bukkit.isPrimaryThread())
-      return world.getChunkAt(chunkX, chunkZ).getChunkSnapshot();
-    return world.getChunkAtAsyncUrgently(chunkX, chunkZ).join().getChunkSnapshot();
+    if (Bukkit.isPrimaryThread()) return captureSnapshot(world.getChunkAt(chunkX, chunkZ));
+    return captureSnapshot(world.getChunkAtAsyncUrgently(chunkX, chunkZ).join());
+  }
+
+  @Override
+  public CompletableFuture<Void> loadChunkAsync(World world, int chunkX, int chunkZ) {
+    return world.getChunkAtAsync(chunkX, chunkZ).thenAccept(chunk -> {});
+  }
+
+  /**
+   * Captures the block data of the chunk only. Pathing never reads the heightmap or biomes, so
+   * copying them would just cost capture time and memory.
+   */
+  private ChunkSnapshot captureSnapshot(Chunk chunk) {
+    return chunk.getChunkSnapshot(false, false, false);
   }
 
   @Override